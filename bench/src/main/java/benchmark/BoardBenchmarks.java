@@ -0,0 +1,250 @@
+package benchmark;
+
+import domain.Manager;
+import domain.Session;
+import interfaces.IBoard;
+import interfaces.IGame;
+import interfaces.IManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Board generation and reveal benchmarks, on the large grid unless noted otherwise.
+ * Every benchmark that changes the board times a whole pass over a board laid out from a fixed seed, so that every
+ * invocation does the same work and the timer's own cost stays small next to it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class BoardBenchmarks {
+
+    private static final long SEED = 42;
+    private static final int MEDIUM_DENSITY = 12; // percent
+
+    private static IBoard largeBoard() {
+        return new Session(Manager.LARGE_GRID_SIZE_Y, Manager.LARGE_GRID_SIZE_X).getBoard();
+    }
+
+    /**
+     * Lays out whole boards. Densities are those used by Manager, in percent, plus two crowded boards
+     */
+    @State(Scope.Thread)
+    public static class Layout {
+
+        @Param({"3", "7", "8", "12", "13", "17", "50", "90"})
+        int density;
+
+        IBoard board;
+        int nBombs;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            board = largeBoard();
+            board.setFirstMove(IBoard.FirstMove.RETRY);
+            nBombs = density * board.getSizeX() * board.getSizeY() / 100;
+        }
+    }
+
+    @Benchmark
+    public int initialize(Layout layout) {
+        layout.board.initialize(layout.nBombs);
+        return layout.board.nTilesToUncover();
+    }
+
+    /**
+     * A medium density board laid out again before every invocation
+     */
+    @State(Scope.Thread)
+    public static class MediumBoard {
+
+        IBoard board;
+        int nBombs;
+
+        @Setup(Level.Trial)
+        public void setupTrial() {
+            board = largeBoard();
+            board.setFirstMove(IBoard.FirstMove.RETRY);
+            nBombs = MEDIUM_DENSITY * board.getSizeX() * board.getSizeY() / 100;
+        }
+
+        @Setup(Level.Invocation)
+        public void setup() {
+            board.initialize(nBombs, SEED);
+        }
+    }
+
+    /**
+     * Reveals, one at a time, every tile of the board that has bombs around it
+     */
+    @Benchmark
+    public int revealSingleTiles(MediumBoard state) {
+        IBoard board = state.board;
+        for (int i = 0; i < board.getSizeY(); ++i) {
+            for (int j = 0; j < board.getSizeX(); ++j) {
+                var cell = board.getCell(i, j);
+                if (!cell.isBomb() && cell.getnCloseBombs() > 0) {
+                    board.revealTile(i, j);
+                }
+            }
+        }
+        return board.nTilesToUncover();
+    }
+
+    /**
+     * A medium single game started again before every invocation, with the moves that reveal every tile that has bombs
+     * around it and flag every bomb
+     */
+    @State(Scope.Thread)
+    public static class SingleTileGame {
+
+        IBoard board;
+        IGame game;
+        IManager manager;
+        int[] moves;
+        int nMoves;
+
+        @Setup(Level.Trial)
+        public void setupTrial() {
+            var session = new Session(Manager.LARGE_GRID_SIZE_Y, Manager.LARGE_GRID_SIZE_X);
+            board = session.getBoard();
+            game = session.getGame();
+            manager = session.getManager();
+            board.setFirstMove(IBoard.FirstMove.RETRY);
+            manager.setMode(IManager.Mode.SINGLE_GAME);
+            manager.setDifficulty(IManager.Difficulty.MEDIUM);
+            moves = new int[board.getSizeX() * board.getSizeY()];
+        }
+
+        @Setup(Level.Invocation)
+        public void setup() {
+            manager.setNewGame(SEED);
+            nMoves = 0;
+            for (int tile = 0; tile < moves.length; ++tile) {
+                var cell = board.getCell(tile / board.getSizeX(), tile % board.getSizeX());
+                if (cell.isBomb()) {
+                    moves[nMoves++] = IGame.move(tile, IGame.FLAG);
+                }
+                else if (cell.getnCloseBombs() > 0) {
+                    moves[nMoves++] = IGame.move(tile, IGame.REVEAL);
+                }
+            }
+        }
+    }
+
+    /**
+     * Plays the moves one call each, with a state check after each one
+     */
+    @Benchmark
+    public int playSingleTilesOneCallEach(SingleTileGame state) {
+        IBoard board = state.board;
+        IGame game = state.game;
+        int sizeX = board.getSizeX();
+        for (int k = 0; k < state.nMoves && game.getState() == IGame.State.PLAYING; ++k) {
+            int tile = state.moves[k] >>> IGame.MOVE_TYPE_BITS;
+            var cell = board.getCell(tile / sizeX, tile % sizeX);
+            if ((state.moves[k] & IGame.FLAG) != 0) {
+                cell.toggleFlag();
+            }
+            else {
+                game.revealTile(tile / sizeX, tile % sizeX);
+            }
+        }
+        return board.nTilesToUncover();
+    }
+
+    /**
+     * Plays the moves as a single batch
+     */
+    @Benchmark
+    public int playSingleTilesOneBatch(SingleTileGame state) {
+        return state.game.play(state.moves, state.nMoves).getnTilesOpened();
+    }
+
+    /**
+     * A board with no bombs, laid out again before every invocation
+     */
+    @State(Scope.Thread)
+    public static class EmptyBoard {
+
+        @Param({"20x36", "1000x1000"})
+        String grid;
+
+        IBoard board;
+
+        @Setup(Level.Trial)
+        public void setupTrial() {
+            String[] size = grid.split("x");
+            board = new Session(Integer.parseInt(size[0]), Integer.parseInt(size[1])).getBoard();
+            board.setFirstMove(IBoard.FirstMove.RETRY);
+        }
+
+        @Setup(Level.Invocation)
+        public void setup() {
+            board.initialize(0);
+        }
+    }
+
+    /**
+     * Reveals the board from its centre, which opens every tile
+     */
+    @Benchmark
+    public int revealOpening(EmptyBoard state) {
+        IBoard board = state.board;
+        board.revealTile(board.getSizeY() / 2, board.getSizeX() / 2);
+        return board.nTilesToUncover();
+    }
+
+    /**
+     * A hard single game started again before every invocation
+     */
+    @State(Scope.Thread)
+    public static class NewGame {
+
+        @Param({"RETRY", "SAFE_TILE"})
+        IBoard.FirstMove firstMove;
+
+        IBoard board;
+        IGame game;
+        IManager manager;
+        long seed;
+
+        @Setup(Level.Trial)
+        public void setupTrial() {
+            var session = new Session(Manager.LARGE_GRID_SIZE_Y, Manager.LARGE_GRID_SIZE_X);
+            board = session.getBoard();
+            game = session.getGame();
+            manager = session.getManager();
+            board.setFirstMove(firstMove);
+            manager.setMode(IManager.Mode.SINGLE_GAME);
+            manager.setDifficulty(IManager.Difficulty.HARD);
+        }
+
+        @Setup(Level.Invocation)
+        public void setup() {
+            manager.setNewGame(seed++);
+        }
+    }
+
+    /**
+     * Reveals the centre tile of a new game
+     */
+    @Benchmark
+    public int firstMove(NewGame state) {
+        state.game.revealTile(state.board.getSizeY() / 2, state.board.getSizeX() / 2);
+        return state.board.nTilesToUncover();
+    }
+}
@@ -0,0 +1,128 @@
+package benchmark;
+
+import domain.Manager;
+import domain.Session;
+import interfaces.IBoard;
+import interfaces.IGame;
+import interfaces.IManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import solver.ProbabilityEngine;
+import solver.Solver;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Solver benchmarks on hard large games, played by revealing the tiles the solver finds safe.
+ * Games are drawn from a fixed sequence of seeds, the same for every run.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SolverBenchmarks {
+
+    /**
+     * A hard large game with a solver following its board
+     */
+    @State(Scope.Thread)
+    public static class SolvedGame {
+
+        IBoard board;
+        IGame game;
+        IManager manager;
+        Solver solver;
+        ProbabilityEngine engine;
+        long seed;
+
+        @Setup(Level.Trial)
+        public void setupTrial() {
+            var session = new Session(Manager.LARGE_GRID_SIZE_Y, Manager.LARGE_GRID_SIZE_X);
+            board = session.getBoard();
+            game = session.getGame();
+            manager = session.getManager();
+            board.setFirstMove(IBoard.FirstMove.SAFE_OPENING);
+            manager.setMode(IManager.Mode.SINGLE_GAME);
+            manager.setDifficulty(IManager.Difficulty.HARD);
+            solver = new Solver(board);
+            engine = new ProbabilityEngine(board);
+        }
+
+        /**
+         * Reveals the centre tile, then the tiles the solver finds safe until there are none left
+         */
+        void playSafeTiles(boolean rebuild) {
+            game.revealTile(board.getSizeY() / 2, board.getSizeX() / 2);
+            for (int tile = solver.getSafeTile(); tile >= 0 && game.getState() == IGame.State.PLAYING;
+                 tile = solver.getSafeTile()) {
+                game.revealTile(tile / board.getSizeX(), tile % board.getSizeX());
+                if (rebuild) {
+                    solver.boardRegenerated();
+                }
+            }
+        }
+    }
+
+    /**
+     * A new game before every invocation
+     */
+    @State(Scope.Thread)
+    public static class NewGame extends SolvedGame {
+
+        /**
+         * whether to solve the whole board again after every move, as a non incremental solver would
+         */
+        @Param({"false", "true"})
+        boolean rebuild;
+
+        @Setup(Level.Invocation)
+        public void setup() {
+            manager.setNewGame(seed++);
+        }
+    }
+
+    /**
+     * Plays a game from an opening until the solver runs out of safe tiles: every move is a reveal and the solver
+     * update that follows it
+     */
+    @Benchmark
+    public int playGame(NewGame state) {
+        state.playSafeTiles(state.rebuild);
+        return state.board.nTilesToUncover();
+    }
+
+    /**
+     * A game played with the solver until no tile is certainly safe, before every invocation
+     */
+    @State(Scope.Thread)
+    public static class StuckGame extends SolvedGame {
+
+        @Setup(Level.Invocation)
+        public void setup() {
+            do {
+                manager.setNewGame(seed++);
+                playSafeTiles(false);
+            } while (game.getState() != IGame.State.PLAYING);
+        }
+    }
+
+    /**
+     * Times the probabilities of a game the solver is stuck on
+     */
+    @Benchmark
+    public int probabilities(StuckGame state) {
+        state.engine.compute(state.manager.getnBombs());
+        return state.engine.getSafestTile();
+    }
+}
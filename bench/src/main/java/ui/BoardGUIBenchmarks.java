@@ -0,0 +1,94 @@
+package ui;
+
+import domain.Session;
+import interfaces.IBoard;
+import interfaces.IGame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full-frame BoardGUI paint benchmarks, drawing into an offscreen image. Runs headless.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class BoardGUIBenchmarks {
+
+    @State(Scope.Thread)
+    public static class PaintedBoard {
+
+        /**
+         * the small, medium and large grids of Manager
+         */
+        @Param({"10x18", "15x25", "20x36"})
+        String grid;
+
+        /**
+         * whether to paint the end of a lost game, with its numbers and bombs showing, rather than a new board
+         */
+        @Param({"false", "true"})
+        boolean lost;
+
+        BoardGUI boardGUI;
+        BufferedImage image;
+        Graphics2D g;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            String[] size = grid.split("x");
+            int sizeY = Integer.parseInt(size[0]);
+            int sizeX = Integer.parseInt(size[1]);
+            var session = new Session(sizeY, sizeX);
+            IBoard board = session.getBoard();
+            IGame game = session.getGame();
+            board.setFirstMove(IBoard.FirstMove.RETRY);
+            session.getManager().setNewGame();
+
+            if (lost) {
+                for (int i = 0; i < sizeY; ++i) {
+                    for (int j = 0; j < sizeX; ++j) {
+                        if (!board.getCell(i, j).isBomb()) {
+                            board.revealTile(i, j);
+                        }
+                    }
+                }
+                game.setState(IGame.State.LOST);
+            }
+
+            // the board is painted from this thread: the engine is only there for its lock
+            GameEngine engine = new GameEngine(() -> { });
+            engine.shutdown();
+            boardGUI = new BoardGUI(null, engine, board, game);
+            image = new BufferedImage(boardGUI.getGridWidth(), boardGUI.getGridHeight(), BufferedImage.TYPE_INT_RGB);
+            g = image.createGraphics();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            g.dispose();
+        }
+    }
+
+    @Benchmark
+    public int paintComponent(PaintedBoard state) {
+        state.boardGUI.paintComponent(state.g);
+        return state.image.getRGB(0, 0);
+    }
+}
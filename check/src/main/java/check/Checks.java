@@ -0,0 +1,269 @@
+package check;
+
+import domain.Replay;
+import domain.ReplayRecorder;
+import domain.ReplayVerifier;
+import domain.Session;
+import interfaces.IBoard;
+import interfaces.ICell;
+import interfaces.IGame;
+import interfaces.IManager;
+import solver.ProbabilityEngine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Headless checks of the properties the game relies on, each over many random games drawn from a fixed seed:
+ * a session recovered from its journal is the live session, a recorded replay verifies as VALID, and the exact
+ * probabilities of a small board add up to its number of bombs.
+ * Exits with status 1 if any check fails.
+ * Usage: java -jar check/target/checks.jar [seed]
+ */
+public class Checks {
+
+    private static final long DEFAULT_SEED = 1;
+    private static final int N_JOURNALED_SESSIONS = 200;
+    private static final int N_RECORDED_GAMES = 2000;
+    private static final int N_PROBABILITY_BOARDS = 2000;
+    private static final double PROBABILITY_TOLERANCE = 1e-9;
+
+    private static int nFailures;
+
+    public static void main(String[] args) throws IOException {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : DEFAULT_SEED;
+        checkJournalRecovery(new SplittableRandom(seed));
+        checkReplays(new SplittableRandom(seed));
+        checkProbabilities(new SplittableRandom(seed));
+        if (nFailures > 0) {
+            System.out.println(nFailures + " failures");
+            System.exit(1);
+        }
+        System.out.println("All checks passed");
+    }
+
+    /**
+     * Plays random sessions with a journal, then recovers each journal into a new session, which must be the same
+     * board, with the same tiles revealed and flagged, the same game state and the same levels
+     */
+    private static void checkJournalRecovery(SplittableRandom random) throws IOException {
+        Path directory = Files.createTempDirectory("checks");
+        int nSessions = 0;
+        for (int k = 0; k < N_JOURNALED_SESSIONS; ++k) {
+            Path file = directory.resolve("journal" + k);
+            int sizeY = 3 + random.nextInt(20);
+            int sizeX = 3 + random.nextInt(30);
+            Session live = new Session(sizeY, sizeX);
+            live.getBoard().setFirstMove(randomFirstMove(random));
+            live.getManager().setUnbounded(random.nextInt(4) == 0);
+            live.getManager().setNewGame(random.nextLong());
+            live.openJournal(file);
+            playSession(live, random, random.nextInt(1000));
+            live.closeJournal();
+
+            Session recovered = new Session(sizeY, sizeX);
+            boolean isRecovered = recovered.openJournal(file);
+            recovered.closeJournal();
+            Files.delete(file);
+            if (check(isRecovered && describe(recovered).equals(describe(live)),
+                    "journal " + k + ": recovered " + describe(recovered) + ", live " + describe(live))) {
+                ++nSessions;
+            }
+        }
+        Files.delete(directory);
+        System.out.println("Journal recovery: " + nSessions + " of " + N_JOURNALED_SESSIONS + " sessions recovered");
+    }
+
+    /**
+     * Plays random moves on the session: reveals, flags, chords, undos, redos, scrolls of unbounded games, and next
+     * levels or new games once a game is over
+     */
+    private static void playSession(Session session, SplittableRandom random, int nMoves) {
+        IBoard board = session.getBoard();
+        IGame game = session.getGame();
+        IManager manager = session.getManager();
+        for (int k = 0; k < nMoves; ++k) {
+            if (game.getState() == IGame.State.WON) {
+                if (manager.getCurrentLevel() < manager.getWinLevel()) {
+                    manager.setNextLevel();
+                }
+                else {
+                    manager.setNewGame();
+                }
+                continue;
+            }
+            int i = random.nextInt(board.getSizeY());
+            int j = random.nextInt(board.getSizeX());
+            int choice = random.nextInt(100);
+            if (game.getState() == IGame.State.LOST) {
+                if (choice < 50) {
+                    game.undo();
+                }
+                else {
+                    manager.setNewGame();
+                }
+            }
+            else if (choice < 60) {
+                game.revealTile(i, j);
+            }
+            else if (choice < 75) {
+                if (!board.getCell(i, j).isVisible()) {
+                    board.getCell(i, j).toggleFlag();
+                }
+            }
+            else if (choice < 85) {
+                game.chord(i, j);
+            }
+            else if (choice < 90) {
+                game.undo();
+            }
+            else if (choice < 93) {
+                game.redo();
+            }
+            else if (choice < 95) {
+                manager.toggleFlagMode();
+            }
+            else if (choice < 97) {
+                manager.scroll(random.nextInt(9) - 4, random.nextInt(9) - 4);
+            }
+            else {
+                revealSafeTile(board, game, random);
+            }
+        }
+    }
+
+    /**
+     * Reveals a covered tile that is not a bomb, if one is found, which takes games through to their end
+     */
+    private static void revealSafeTile(IBoard board, IGame game, SplittableRandom random) {
+        for (int k = 0; k < 32; ++k) {
+            int i = random.nextInt(board.getSizeY());
+            int j = random.nextInt(board.getSizeX());
+            ICell cell = board.getCell(i, j);
+            if (!cell.isBomb() && !cell.isVisible() && !cell.hasFlag()) {
+                game.revealTile(i, j);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the layout, the revealed and flagged tiles, the state of the game and the levels of the session
+     */
+    private static String describe(Session session) {
+        IBoard board = session.getBoard();
+        IGame game = session.getGame();
+        IManager manager = session.getManager();
+        StringBuilder description = new StringBuilder(board.getFingerprint())
+                .append(' ').append(game.getState())
+                .append(" level ").append(manager.getCurrentLevel()).append('/').append(manager.getWinLevel())
+                .append(' ').append(manager.getMode()).append(' ').append(manager.getDifficulty())
+                .append(' ').append(manager.getnBombs()).append(' ');
+        long tiles = 0;
+        for (int i = 0; i < board.getSizeY(); ++i) {
+            for (int j = 0; j < board.getSizeX(); ++j) {
+                ICell cell = board.getCell(i, j);
+                tiles = 31 * tiles + (cell.isVisible() ? 1 : 0) + (cell.hasFlag() ? 2 : 0);
+            }
+        }
+        return description.append(Long.toHexString(tiles)).toString();
+    }
+
+    /**
+     * Records random games, with batches of moves as bots and remote players send them, and verifies every replay
+     */
+    private static void checkReplays(SplittableRandom random) {
+        List<Replay> replays = new ArrayList<>();
+        Session session = new Session(15, 25);
+        IBoard board = session.getBoard();
+        IGame game = session.getGame();
+        var recorder = new ReplayRecorder(board, game, replays::add);
+        int nTiles = board.getSizeY() * board.getSizeX();
+        int[] moves = new int[16];
+        for (int k = 0; k < N_RECORDED_GAMES; ++k) {
+            board.setFirstMove(randomFirstMove(random));
+            session.getManager().setNewGame(random.nextLong());
+            while (game.getState() == IGame.State.PLAYING) {
+                int nMoves = 1 + random.nextInt(moves.length);
+                for (int m = 0; m < nMoves; ++m) {
+                    int choice = random.nextInt(100);
+                    int type = choice < 75 ? IGame.REVEAL : choice < 85 ? IGame.FLAG : choice < 95 ? IGame.CHORD
+                            : IGame.UNDO;
+                    moves[m] = IGame.move(type == IGame.UNDO ? 0 : random.nextInt(nTiles), type);
+                }
+                // a lost game is sometimes taken back and played on
+                if (game.play(moves, nMoves).getState() == IGame.State.LOST && random.nextInt(4) == 0) {
+                    game.play(new int[] {IGame.move(0, IGame.UNDO)}, 1);
+                }
+            }
+        }
+        recorder.finish();
+
+        var verifier = new ReplayVerifier();
+        int nValid = 0;
+        for (Replay replay : replays) {
+            ReplayVerifier.Verdict verdict = verifier.verify(replay);
+            if (check(verdict == ReplayVerifier.Verdict.VALID, "replay of seed " + replay.getSeed() + ": " + verdict)) {
+                ++nValid;
+            }
+        }
+        check(replays.size() >= N_RECORDED_GAMES, "only " + replays.size() + " replays recorded");
+        System.out.println("Replays: " + nValid + " of " + replays.size() + " replays valid");
+    }
+
+    /**
+     * Reveals a few tiles on small boards, and adds the probabilities up over the whole board, which must give the
+     * number of bombs
+     */
+    private static void checkProbabilities(SplittableRandom random) {
+        int nChecked = 0;
+        for (int k = 0; k < N_PROBABILITY_BOARDS; ++k) {
+            int sizeY = 3 + random.nextInt(6);
+            int sizeX = 3 + random.nextInt(6);
+            Session session = new Session(sizeY, sizeX);
+            IBoard board = session.getBoard();
+            IGame game = session.getGame();
+            board.setFirstMove(IBoard.FirstMove.SAFE_OPENING);
+            session.getManager().setDifficulty(IManager.Difficulty.values()[random.nextInt(3)]);
+            session.getManager().setNewGame(random.nextLong());
+            game.revealTile(random.nextInt(sizeY), random.nextInt(sizeX));
+            for (int n = random.nextInt(4); n > 0 && game.getState() == IGame.State.PLAYING; --n) {
+                revealSafeTile(board, game, random);
+            }
+            if (game.getState() != IGame.State.PLAYING) continue;
+
+            var engine = new ProbabilityEngine(board, null);
+            boolean isExact = engine.compute(board.getnBombs());
+            double sum = 0;
+            for (int i = 0; i < sizeY; ++i) {
+                for (int j = 0; j < sizeX; ++j) {
+                    sum += engine.getProbability(i, j);
+                }
+            }
+            check(isExact && Math.abs(sum - board.getnBombs()) < PROBABILITY_TOLERANCE,
+                    board.getFingerprint() + ": probabilities add up to " + sum + ", exact " + isExact);
+            ++nChecked;
+        }
+        System.out.println("Probabilities: " + nChecked + " boards checked");
+    }
+
+    private static IBoard.FirstMove randomFirstMove(SplittableRandom random) {
+        return IBoard.FirstMove.values()[random.nextInt(IBoard.FirstMove.values().length)];
+    }
+
+    /**
+     * Reports a failure unless the condition holds
+     * @return the condition
+     */
+    private static boolean check(boolean condition, String failure) {
+        if (!condition) {
+            ++nFailures;
+            System.out.println("FAILED " + failure);
+        }
+        return condition;
+    }
+}
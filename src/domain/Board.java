@@ -1,146 +1,651 @@
 package domain;
 
 import interfaces.IBoard;
+import interfaces.IBoardListener;
 import interfaces.ICell;
 
-import java.util.LinkedList;
-import java.util.Random;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 /**
  * Represents the game board logical structure. It modifies the board state.
+ * Tiles are stored as one packed byte each, in row-major order, and the storage is reused across games.
+ * Every layout is drawn from a seed: the same size, number of bombs, seed and first revealed tile give the same layout
+ * on any machine.
  */
 public class Board implements IBoard {
 
-    /**
-     * n rows, n columns
-     */
-    private static Board instance = new Board(Manager.DEFAULT_GRID_SIZE_Y, Manager.DEFAULT_GRID_SIZE_X);
+    // size of the fields written by write() before the tiles
+    private static final int SAVED_FIELDS_SIZE = 3 * Integer.BYTES + 2 + Integer.BYTES + 3 * Long.BYTES;
+
+    // 8 tiles read or written as one long, tile k of the group in byte k
+    private static final VarHandle TILE_GROUPS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long GATHER = 0x0102040810204080L; // moves the low bit of byte k to bit 56 + k
+    private static final long[] SPREAD = new long[256]; // bit k of the index moved to the low bit of byte k
+
+    static {
+        for (int bits = 0; bits < SPREAD.length; ++bits) {
+            for (int k = 0; k < 8; ++k) {
+                SPREAD[bits] |= (long) (bits >> k & 1) << 8 * k;
+            }
+        }
+    }
+
+    // layout of a packed tile: the low nibble holds the number of close bombs (0 to 8)
+    private static final int N_CLOSE_BOMBS_MASK = 0x0F;
+    private static final int BOMB_BIT = 4;
+    private static final int BOMB = 1 << BOMB_BIT;
+    private static final int VISIBLE_BIT = 5;
+    private static final int VISIBLE = 1 << VISIBLE_BIT;
+    private static final int FLAG_BIT = 6;
+    private static final int FLAG = 1 << FLAG_BIT;
+    private static final int KEEP_CLEAR = 0x80; // only set while bombs are moved off the first revealed tiles
 
     /**
-     * used for incrementing neighbour bomb index values
+     * Lightweight view of a single tile. It holds no state of its own and reads through to the packed grid.
      */
-    private static int[][] deltas = {
-            {-1, -1}, {-1, 0}, {-1, 1},
-            { 0, -1},          { 0, 1},
-            { 1, -1}, { 1, 0}, { 1, 1}
-    };
-
     class Cell implements ICell {
-        private int nCloseBombs;
-        private boolean isBomb;
-        private boolean isVisible;
-        private boolean hasFlag;
+        private final int index;
 
-        Cell() {
-            this.nCloseBombs = 0;
-            this.isBomb = false;
-            this.isVisible = false;
-            this.hasFlag = false;
+        Cell(int index) {
+            this.index = index;
         }
 
         @Override
         public int getnCloseBombs() {
-            return nCloseBombs;
+            return Board.this.getnCloseBombs(index);
         }
         @Override
         public boolean isBomb() {
-            return isBomb;
+            return Board.this.isBomb(index);
         }
         @Override
         public boolean isVisible() {
-            return isVisible;
+            return Board.this.isVisible(index);
         }
         @Override
-        public boolean hasFlag() { return hasFlag; }
+        public boolean hasFlag() { return Board.this.hasFlag(index); }
         @Override
         public void toggleFlag() {
-            hasFlag = !hasFlag;
+            Board.this.toggleFlag(index);
         }
     }
 
     private int sizeX;
     private int sizeY;
-    private Cell[][] grid;
+    private byte[] cells; // may be larger than sizeX * sizeY after a switch to a smaller board
+    private int[] openList; // reveal queue of packed indexes, reused by every reveal. Also lists the last changed tiles
+    private int nChangedTiles;
+    private int[] tileOrder; // permutation of the tile indexes, shuffled in place to place bombs: the bombs come first
     private int nTilesToUncover;
     private int nBombs; // stores the last number of bombs for purposes of re-initializing after a first-move fail.
+    private FirstMove firstMove = FirstMove.SAFE_TILE;
+    private boolean isLaidOut;
+    private long seed; // seed of the current layout
+    private int safeTile = -1; // tile kept clear of bombs by the current layout, or -1
+    private final SplitMix64 seeds; // the seeds of the layouts that do not get one explicitly
+    private SplitMix64 random = new SplitMix64(0); // reseeded for every layout, and used by keepClear() after it
+    private PreparedLayout prepared; // next layout, being built by prepare()
+    private CompletableFuture<Void> preparedTask;
+    private PreparedLayout cancelled; // last layout cancelled, whose storage is reused once its task is over
+    private CompletableFuture<Void> cancelledTask;
+    private byte[] spareCells; // storage for the next prepare(): the layout before the last swap, or a cancelled one
+    private int[] spareTileOrder;
+    private final List<IBoardListener> listeners = new ArrayList<>();
 
-    private Board(int m, int n) {
-        setGrid(m, n);
+    /**
+     * A layout built on another thread, to be swapped in by initializePrepared()
+     */
+    private static final class PreparedLayout implements Runnable {
+        final int sizeY;
+        final int sizeX;
+        final int nBombs;
+        final long seed;
+        final long seedsState; // state of the board's seed sequence before the seed was drawn
+        final long seedsEnd; // and after
+        final byte[] cells;
+        final int[] tileOrder;
+        final SplitMix64 random;
+        volatile boolean isCancelled;
+
+        PreparedLayout(int sizeY, int sizeX, int nBombs, long seed, long seedsState, long seedsEnd, byte[] cells,
+                       int[] tileOrder) {
+            this.sizeY = sizeY;
+            this.sizeX = sizeX;
+            this.nBombs = nBombs;
+            this.seed = seed;
+            this.seedsState = seedsState;
+            this.seedsEnd = seedsEnd;
+            this.cells = cells;
+            this.tileOrder = tileOrder;
+            random = new SplitMix64(seed);
+        }
+
+        @Override
+        public void run() {
+            int nTiles = sizeX * sizeY;
+            resetTiles(cells, tileOrder, nTiles);
+            if (isCancelled) return;
+            placeBombs(cells, tileOrder, random, nBombs, nTiles);
+            if (isCancelled) return;
+            countCloseBombs(cells, sizeY, sizeX);
+        }
     }
 
-    public static Board getInstance() {
-        return instance;
+    /**
+     * m rows, n columns
+     */
+    Board(int m, int n) {
+        setGrid(m, n);
+        seeds = new SplitMix64(new SplittableRandom().nextLong());
     }
 
     @Override
     public void initialize(int numBombs) {
-        nBombs = numBombs;
-        nTilesToUncover = sizeX * sizeY - numBombs;
-        // create cells
-        for (int row = 0; row < sizeY; ++row ) {
-            for (int col = 0; col < sizeX; ++col) {
-                grid[row][col] = new Cell();
+        initialize(numBombs, seeds.nextLong());
+    }
+
+    @Override
+    public void initialize(int numBombs, long seed) {
+        start(numBombs, seed);
+        int nTiles = sizeX * sizeY;
+        resetTiles(cells, tileOrder, nTiles);
+        random.setSeed(seed);
+        placeBombs(cells, tileOrder, random, numBombs, nTiles);
+        countCloseBombs(cells, sizeY, sizeX);
+
+        // with a lazy first move, the layout is final once the first reveal has moved the bombs off the tiles to keep clear
+        isLaidOut = firstMove == FirstMove.RETRY;
+
+        for (int k = 0; k < listeners.size(); ++k) {
+            listeners.get(k).boardRegenerated();
+        }
+    }
+
+    /**
+     * Lays the board out at once from the seed, keeping clear the start tile and its neighbours as in
+     * FirstMove.SAFE_OPENING, whatever the first-move policy
+     */
+    void initialize(int numBombs, long seed, int startTile) {
+        start(numBombs, seed);
+        int nTiles = sizeX * sizeY;
+        resetTiles(cells, tileOrder, nTiles);
+        random.setSeed(seed);
+        placeBombs(cells, tileOrder, random, numBombs, nTiles);
+        countCloseBombs(cells, sizeY, sizeX);
+        keepClear(startTile, true);
+
+        for (int k = 0; k < listeners.size(); ++k) {
+            listeners.get(k).boardRegenerated();
+        }
+    }
+
+    /**
+     * Lays the board out as a window over a larger board, from tiles packed as the tiles of this board, with their close
+     * bomb counts: those of the edge tiles take the tiles beyond the window into account, while openings stop at its edges.
+     * The tiles beyond the window count as one more tile to uncover, so that a game on a window is never won.
+     * @param tiles the tiles of the window, in row-major order
+     */
+    void initializeWindow(byte[] tiles, long seed) {
+        int nTiles = sizeX * sizeY;
+        int nWindowBombs = 0;
+        int nVisible = 0;
+        for (int tile = 0; tile < nTiles; ++tile) {
+            cells[tile] = tiles[tile];
+            if ((tiles[tile] & BOMB) != 0) {
+                ++nWindowBombs;
+            }
+            else if ((tiles[tile] & VISIBLE) != 0) {
+                ++nVisible;
             }
         }
+        start(nWindowBombs, seed);
+        nTilesToUncover += 1 - nVisible;
+        isLaidOut = true;
 
-        placeBombs(numBombs);
+        for (int k = 0; k < listeners.size(); ++k) {
+            listeners.get(k).boardRegenerated();
+        }
     }
 
+    /**
+     * Starts laying out the next board on the executor, from the next seed of the board's seed sequence.
+     * initializePrepared() then swaps it in, as initialize(numBombs, seed) would have laid it out.
+     */
+    void prepare(int numBombs, Executor executor) {
+        cancelPrepared();
+        int nTiles = sizeX * sizeY;
+        byte[] nextCells = spareCells != null && spareCells.length >= nTiles ? spareCells : new byte[nTiles];
+        int[] nextTileOrder = spareTileOrder != null && spareTileOrder.length >= nTiles ? spareTileOrder : new int[nTiles];
+        spareCells = null;
+        spareTileOrder = null;
+        long seedsState = seeds.getSeed();
+        long nextSeed = seeds.nextLong();
+        prepared = new PreparedLayout(sizeY, sizeX, numBombs, nextSeed, seedsState, seeds.getSeed(), nextCells,
+                nextTileOrder);
+        preparedTask = CompletableFuture.runAsync(prepared, executor);
+    }
+
+    /**
+     * Swaps in the layout started by prepare(), after waiting for it to be ready if needed
+     * @return false, leaving the board unchanged, if no layout was prepared for this number of bombs and grid size
+     */
+    boolean initializePrepared(int numBombs) {
+        PreparedLayout layout = prepared;
+        if (layout == null || layout.nBombs != numBombs || layout.sizeX != sizeX || layout.sizeY != sizeY) {
+            cancelPrepared();
+            return false;
+        }
+        try {
+            preparedTask.join();
+        }
+        catch (CompletionException | CancellationException e) {
+            cancelPrepared();
+            return false;
+        }
+        prepared = null;
+        preparedTask = null;
+
+        start(numBombs, layout.seed);
+        spareCells = cells;
+        spareTileOrder = tileOrder;
+        cells = layout.cells;
+        tileOrder = layout.tileOrder;
+        random = layout.random;
+        isLaidOut = firstMove == FirstMove.RETRY;
+
+        for (int k = 0; k < listeners.size(); ++k) {
+            listeners.get(k).boardRegenerated();
+        }
+        return true;
+    }
+
+    /**
+     * Drops the layout started by prepare(), if any. Its thread stops at the next step of the layout, after which its
+     * storage is kept for the next prepare(). The seed it drew is given back to the seed sequence, unless the sequence
+     * moved on since, so that the layouts that follow do not depend on whether one was prepared.
+     */
+    void cancelPrepared() {
+        recycleCancelled();
+        if (prepared != null) {
+            prepared.isCancelled = true;
+            if (seeds.getSeed() == prepared.seedsEnd) {
+                seeds.setSeed(prepared.seedsState);
+            }
+            // the task is left to stop on its own: a cancelled future completes at once, while the layout may go on
+            // writing to its storage for a while
+            cancelled = prepared;
+            cancelledTask = preparedTask;
+            prepared = null;
+            preparedTask = null;
+        }
+    }
+
+    /**
+     * Takes the storage of the last cancelled layout as spare storage, once its task is over
+     */
+    private void recycleCancelled() {
+        if (cancelled == null || !cancelledTask.isDone()) return;
+        if (spareCells == null || spareCells.length < cancelled.cells.length) {
+            spareCells = cancelled.cells;
+            spareTileOrder = cancelled.tileOrder;
+        }
+        cancelled = null;
+        cancelledTask = null;
+    }
+
+    /**
+     * @return the number of bytes write() takes for a board of this size
+     */
+    static long getSavedSize(int sizeY, int sizeX) {
+        return SAVED_FIELDS_SIZE + 3L * Long.BYTES * getnWords((long) sizeY * sizeX);
+    }
+
+    /**
+     * Writes the board at the position of the buffer: its fields, then its bombs, visible tiles and flags as three bitsets
+     * of 64 tiles per long. The close bomb counts are not written, they are counted again by read().
+     * A layout being prepared is not written: the seed sequence is written as it was before, so that the layout
+     * prepared again after read() is the same one
+     */
+    void write(ByteBuffer buffer) {
+        buffer.putInt(sizeY).putInt(sizeX).putInt(nBombs)
+                .put((byte) firstMove.ordinal()).put((byte) (isLaidOut ? 1 : 0)).putInt(safeTile)
+                .putLong(seed).putLong(prepared != null ? prepared.seedsState : seeds.getSeed()).putLong(random.getSeed());
+
+        int nTiles = sizeX * sizeY;
+        int nWords = getnWords(nTiles);
+        int bombs = buffer.position();
+        int visible = bombs + nWords * Long.BYTES;
+        int flags = visible + nWords * Long.BYTES;
+        for (int word = 0; word < nWords; ++word) {
+            int first = word * 64;
+            int end = Math.min(first + 64, nTiles);
+            long bombWord = 0;
+            long visibleWord = 0;
+            long flagWord = 0;
+            int tile = first;
+            // 8 tiles at a time, gathering one bit of each of their bytes
+            for (; tile + 8 <= end; tile += 8) {
+                long group = (long) TILE_GROUPS.get(cells, tile);
+                bombWord |= gather(group >>> BOMB_BIT) << tile;
+                visibleWord |= gather(group >>> VISIBLE_BIT) << tile;
+                flagWord |= gather(group >>> FLAG_BIT) << tile;
+            }
+            for (; tile < end; ++tile) {
+                int cell = cells[tile];
+                bombWord |= (long) (cell >> BOMB_BIT & 1) << tile;
+                visibleWord |= (long) (cell >> VISIBLE_BIT & 1) << tile;
+                flagWord |= (long) (cell >> FLAG_BIT & 1) << tile;
+            }
+            buffer.putLong(bombs + word * Long.BYTES, bombWord);
+            buffer.putLong(visible + word * Long.BYTES, visibleWord);
+            buffer.putLong(flags + word * Long.BYTES, flagWord);
+        }
+        buffer.position(flags + nWords * Long.BYTES);
+    }
+
+    /**
+     * Reads a board written by write(), from the position of the buffer to its limit.
+     * A board whose bombs were not all placed yet is laid out again from its seed, which gives the same layout.
+     * @return false, leaving the board unchanged, if the data does not hold a valid board
+     */
+    boolean read(ByteBuffer buffer) {
+        if (buffer.remaining() < SAVED_FIELDS_SIZE) return false;
+        int savedSizeY = buffer.getInt();
+        int savedSizeX = buffer.getInt();
+        int savedBombs = buffer.getInt();
+        int savedFirstMove = buffer.get();
+        boolean savedIsLaidOut = buffer.get() != 0;
+        int savedSafeTile = buffer.getInt();
+        long savedSeed = buffer.getLong();
+        long savedSeeds = buffer.getLong();
+        long savedRandom = buffer.getLong();
+
+        long nTiles = (long) savedSizeY * savedSizeX;
+        if (savedSizeY < 1 || savedSizeX < 1 || nTiles > Integer.MAX_VALUE / 2
+                || buffer.remaining() != getSavedSize(savedSizeY, savedSizeX) - SAVED_FIELDS_SIZE
+                || savedBombs < 0 || savedBombs > nTiles || savedSafeTile < -1 || savedSafeTile >= nTiles
+                || savedFirstMove < 0 || savedFirstMove >= FirstMove.values().length) {
+            return false;
+        }
+        int nWords = getnWords(nTiles);
+        int bombs = buffer.position();
+        int visible = bombs + nWords * Long.BYTES;
+        int flags = visible + nWords * Long.BYTES;
+        int nBombsFound = 0;
+        for (int word = 0; word < nWords; ++word) {
+            nBombsFound += Long.bitCount(buffer.getLong(bombs + word * Long.BYTES));
+        }
+        if (nBombsFound != savedBombs) return false;
+
+        setGrid(savedSizeY, savedSizeX);
+        firstMove = FirstMove.values()[savedFirstMove];
+        start(savedBombs, savedSeed);
+        if (savedIsLaidOut) {
+            for (int word = 0; word < nWords; ++word) {
+                long bombWord = buffer.getLong(bombs + word * Long.BYTES);
+                long visibleWord = buffer.getLong(visible + word * Long.BYTES);
+                long flagWord = buffer.getLong(flags + word * Long.BYTES);
+                setTiles(word, bombWord, visibleWord, flagWord);
+                // visible bombs only end a game, they are not tiles to uncover
+                nTilesToUncover -= Long.bitCount(visibleWord & ~bombWord);
+            }
+            countCloseBombs(cells, sizeY, sizeX);
+            isLaidOut = true;
+        }
+        else {
+            // no tile was revealed yet, but flags may have been placed
+            resetTiles(cells, tileOrder, sizeX * sizeY);
+            random.setSeed(savedSeed);
+            placeBombs(cells, tileOrder, random, savedBombs, sizeX * sizeY);
+            countCloseBombs(cells, sizeY, sizeX);
+            isLaidOut = false;
+            for (int word = 0; word < nWords; ++word) {
+                long flagWord = buffer.getLong(flags + word * Long.BYTES);
+                for (int tile = word * 64; flagWord != 0; flagWord &= flagWord - 1) {
+                    cells[tile + Long.numberOfTrailingZeros(flagWord)] |= FLAG;
+                }
+            }
+        }
+        safeTile = savedSafeTile;
+        seeds.setSeed(savedSeeds);
+        random.setSeed(savedRandom);
+        buffer.position(flags + nWords * Long.BYTES);
+
+        for (int k = 0; k < listeners.size(); ++k) {
+            listeners.get(k).boardRegenerated();
+        }
+        return true;
+    }
+
+    /**
+     * Sets the 64 tiles of a word of the saved bitsets, with no close bomb counts
+     */
+    private void setTiles(int word, long bombWord, long visibleWord, long flagWord) {
+        int first = word * 64;
+        int end = Math.min(first + 64, sizeX * sizeY);
+        int tile = first;
+        // 8 tiles at a time, spreading a byte of each bitset over their bytes
+        for (; tile + 8 <= end; tile += 8) {
+            int shift = tile - first;
+            TILE_GROUPS.set(cells, tile, SPREAD[(int) (bombWord >>> shift) & 0xFF] << BOMB_BIT
+                    | SPREAD[(int) (visibleWord >>> shift) & 0xFF] << VISIBLE_BIT
+                    | SPREAD[(int) (flagWord >>> shift) & 0xFF] << FLAG_BIT);
+        }
+        for (; tile < end; ++tile) {
+            int shift = tile - first;
+            cells[tile] = (byte) ((bombWord >>> shift & 1) << BOMB_BIT | (visibleWord >>> shift & 1) << VISIBLE_BIT
+                    | (flagWord >>> shift & 1) << FLAG_BIT);
+        }
+    }
+
+    /**
+     * @return the low bits of the 8 bytes of group, as the 8 bits of a byte
+     */
+    private static long gather(long group) {
+        return (group & LOW_BITS) * GATHER >>> 56;
+    }
+
+    private static int getnWords(long nTiles) {
+        return (int) ((nTiles + 63) / 64);
+    }
+
+    private void start(int numBombs, long seed) {
+        this.seed = seed;
+        // the layouts that follow, such as the next levels or first-move retries, are reproducible from this seed too
+        seeds.setSeed(SplitMix64.mix64(seed));
+        safeTile = -1;
+        nBombs = numBombs;
+        nTilesToUncover = sizeX * sizeY - numBombs;
+        nChangedTiles = 0;
+    }
+
+    /**
+     * Lays the board out again, from the first seed of the sequence started by the current seed. The seed does not depend on
+     * the layouts prepared in the background since, so that replaying a game retries the same layouts
+     */
     @Override
     public void reinitialize() {
-        initialize(nBombs);
+        initialize(nBombs, SplitMix64.first(SplitMix64.mix64(seed)));
     }
 
-    private void placeBombs(int bombsToPlace) {
+    /**
+     * Moves the bombs off the first revealed tile, and off its neighbours for an opening, to tiles drawn uniformly
+     * among the other tiles without bombs. The bombs are then laid out uniformly over the tiles not kept clear.
+     * @param safeTile packed index of the first revealed tile
+     * @param isOpening whether to keep the neighbours of safeTile clear too
+     */
+    private void keepClear(int safeTile, boolean isOpening) {
+        this.safeTile = safeTile;
+        isLaidOut = true;
+        int nTiles = sizeX * sizeY;
+        if (nBombs >= nTiles) return;
+
+        int row = safeTile / sizeX;
+        int col = safeTile - row * sizeX;
+        int firstRow = row, lastRow = row, firstCol = col, lastCol = col;
+        if (isOpening) {
+            firstRow = Math.max(row - 1, 0);
+            lastRow = Math.min(row + 1, sizeY - 1);
+            firstCol = Math.max(col - 1, 0);
+            lastCol = Math.min(col + 1, sizeX - 1);
+        }
+        // on a crowded board, keep at least the revealed tile itself clear
+        if (nBombs > nTiles - (lastRow - firstRow + 1) * (lastCol - firstCol + 1)) {
+            firstRow = lastRow = row;
+            firstCol = lastCol = col;
+        }
+        for (int i = firstRow; i <= lastRow; ++i) {
+            for (int j = firstCol; j <= lastCol; ++j) {
+                cells[i * sizeX + j] |= KEEP_CLEAR;
+            }
+        }
+
+        // the tiles without bombs are listed after the bombs in tileOrder
+        int nFree = nTiles - nBombs;
+        for (int i = firstRow; i <= lastRow; ++i) {
+            for (int j = firstCol; j <= lastCol; ++j) {
+                int tile = i * sizeX + j;
+                if ((cells[tile] & BOMB) == 0) continue;
+                int pick;
+                do {
+                    pick = nBombs + random.nextInt(nFree);
+                } while ((cells[tileOrder[pick]] & KEEP_CLEAR) != 0);
+                int target = tileOrder[pick];
+                tileOrder[pick] = tile;
+                cells[tile] &= ~BOMB;
+                addToNeighbours(tile, -1);
+                cells[target] |= BOMB;
+                addToNeighbours(target, 1);
+            }
+        }
 
-        Random random = new Random();
+        for (int i = firstRow; i <= lastRow; ++i) {
+            for (int j = firstCol; j <= lastCol; ++j) {
+                cells[i * sizeX + j] &= ~KEEP_CLEAR;
+            }
+        }
+    }
 
-        while (bombsToPlace > 0) {
-            int i = random.nextInt(sizeY);
-            int j = random.nextInt(sizeX);
-            Cell cell = grid[i][j];
-            while (cell.isBomb) {
-                i = random.nextInt(sizeY);
-                j = random.nextInt(sizeX);
-                cell = grid[i][j];
+    /**
+     * Adds delta to the close bomb count of the neighbours of the tile
+     */
+    private void addToNeighbours(int tile, int delta) {
+        int row = tile / sizeX;
+        int col = tile - row * sizeX;
+        for (int i = Math.max(row - 1, 0), lastRow = Math.min(row + 1, sizeY - 1); i <= lastRow; ++i) {
+            for (int j = Math.max(col - 1, 0), lastCol = Math.min(col + 1, sizeX - 1); j <= lastCol; ++j) {
+                if (i != row || j != col) {
+                    cells[i * sizeX + j] += delta;
+                }
             }
-            cell.isBomb = true;
-            getBombIndexValues(i, j);
-            --bombsToPlace;
         }
     }
 
-    private void getBombIndexValues(int row, int col) {
+    /**
+     * Clears the tiles and puts tileOrder back in order, so that the shuffle starts from the same order for a given seed
+     */
+    private static void resetTiles(byte[] cells, int[] tileOrder, int nTiles) {
+        for (int tile = 0; tile < nTiles; ++tile) {
+            cells[tile] = 0;
+            tileOrder[tile] = tile;
+        }
+    }
 
-        for (int[] delta : deltas) {
-            int i_child = row + delta[0];
-            int j_child = col + delta[1];
+    /**
+     * Places bombs on the tiles, leaving the bombs in the first entries of tileOrder and the other tiles after them
+     */
+    private static void placeBombs(byte[] cells, int[] tileOrder, SplitMix64 random, int bombsToPlace, int nTiles) {
+
+        // partial Fisher-Yates shuffle: after k steps the first k entries of tileOrder are a uniform sample of the tiles
+        for (int k = 0; k < bombsToPlace; ++k) {
+            int pick = k + random.nextInt(nTiles - k);
+            int tile = tileOrder[pick];
+            tileOrder[pick] = tileOrder[k];
+            tileOrder[k] = tile;
+            cells[tile] |= BOMB;
+        }
+    }
 
-            if (i_child < 0 || i_child >= sizeY || j_child < 0 || j_child >= sizeX) {
-                continue;
+    /**
+     * Sets the close bomb count of every tile in a single pass, sliding a window of three column sums along each row.
+     */
+    private static void countCloseBombs(byte[] cells, int sizeY, int sizeX) {
+
+        for (int row = 0; row < sizeY; ++row) {
+            int previous = 0;
+            int current = columnBombs(cells, sizeY, sizeX, row, 0);
+            for (int col = 0; col < sizeX; ++col) {
+                int next = col < sizeX - 1 ? columnBombs(cells, sizeY, sizeX, row, col + 1) : 0;
+                int index = row * sizeX + col;
+                cells[index] |= previous + current + next - ((cells[index] & BOMB) >> BOMB_BIT);
+                previous = current;
+                current = next;
             }
-            ++grid[i_child][j_child].nCloseBombs;
         }
+    }
 
+    /**
+     * @return the number of bombs in column col, from row - 1 to row + 1
+     */
+    private static int columnBombs(byte[] cells, int sizeY, int sizeX, int row, int col) {
+
+        int index = row * sizeX + col;
+        int n = (cells[index] & BOMB) >> BOMB_BIT;
+        if (row > 0) {
+            n += (cells[index - sizeX] & BOMB) >> BOMB_BIT;
+        }
+        if (row < sizeY - 1) {
+            n += (cells[index + sizeX] & BOMB) >> BOMB_BIT;
+        }
+        return n;
     }
 
     @Override
     public RevealResult revealTile(int i, int j) {
 
-        Cell cell = grid[i][j];
+        RevealResult result = uncover(i, j);
+        if (nChangedTiles > 0) {
+            for (int k = 0; k < listeners.size(); ++k) {
+                listeners.get(k).tilesRevealed(openList, nChangedTiles);
+            }
+        }
+        return result;
+    }
 
-        if (cell.isVisible) return RevealResult.CONTINUE; // an already discovered tile was selected
+    private RevealResult uncover(int i, int j) {
 
-        cell.isVisible = true;
+        int index = i * sizeX + j;
+        if (!isLaidOut) {
+            keepClear(index, firstMove == FirstMove.SAFE_OPENING);
+        }
+        int cell = cells[index];
+        nChangedTiles = 0;
 
-        if (cell.isBomb) {
+        if ((cell & VISIBLE) != 0) return RevealResult.CONTINUE; // an already discovered tile was selected
+
+        if ((cell & BOMB) != 0) {
+            cells[index] |= VISIBLE;
+            openList[nChangedTiles++] = index;
             return RevealResult.LOSS;
         }
-        else if (cell.nCloseBombs == 0) {
-            cell.isVisible = false; // flipNeighbours will switch it back to true
-            flipNeighbours(i, j);
+        else if ((cell & N_CLOSE_BOMBS_MASK) == 0) {
+            flipNeighbours(index);
         }
         else {
+            cells[index] |= VISIBLE;
+            openList[nChangedTiles++] = index;
             --nTilesToUncover;
         }
 
@@ -148,50 +653,252 @@ public class Board implements IBoard {
     }
 
 
-    private void flipNeighbours(int i, int j) {
-        int[][] deltas = {
-                {-1, -1}, {-1, 0}, {-1, 1},
-                { 0, -1},          { 0, 1},
-                { 1, -1}, { 1, 0}, { 1, 1}
-        };
+    @Override
+    public RevealResult chord(int i, int j) {
 
-        //BFS search
-        LinkedList<int[]> openList = new LinkedList<>();
-        // no visitedList is needed: we check value of isVisible
-        openList.add(new int[]{i, j});
-        while (! openList.isEmpty()) {
-            // process next node and add neighbours to openList
-            int[] visiting = openList.remove();
-            Cell current = grid[visiting[0]][visiting[1]];
-            if (current.isVisible) { // verifies that the cell has been visited
-                continue;
+        RevealResult result = chordNeighbours(i * sizeX + j);
+        if (nChangedTiles > 0) {
+            for (int k = 0; k < listeners.size(); ++k) {
+                listeners.get(k).tilesRevealed(openList, nChangedTiles);
             }
+        }
+        return result;
+    }
 
-            current.isVisible = true;
-            --nTilesToUncover;
-            if (nTilesToUncover == 0) return;
+    /**
+     * Reveals the covered, unflagged neighbours of a satisfied number. The safe ones start a single flood fill together,
+     * and the bombs, if a flag was wrong, are added to the revealed tiles after it.
+     */
+    private RevealResult chordNeighbours(int index) {
+
+        int cell = cells[index];
+        nChangedTiles = 0;
+        if ((cell & (VISIBLE | BOMB)) != VISIBLE || (cell & N_CLOSE_BOMBS_MASK) == 0) return RevealResult.CONTINUE;
+
+        int row = index / sizeX;
+        int col = index - row * sizeX;
+        int firstRow = row > 0 ? row - 1 : row;
+        int lastRow = row < sizeY - 1 ? row + 1 : row;
+        int firstCol = col > 0 ? col - 1 : col;
+        int lastCol = col < sizeX - 1 ? col + 1 : col;
+
+        int nFlags = 0;
+        for (int i = firstRow; i <= lastRow; ++i) {
+            for (int neighbour = i * sizeX + firstCol, end = i * sizeX + lastCol; neighbour <= end; ++neighbour) {
+                if ((cells[neighbour] & (VISIBLE | FLAG)) == FLAG) {
+                    ++nFlags;
+                }
+            }
+        }
+        if (nFlags != (cell & N_CLOSE_BOMBS_MASK)) return RevealResult.CONTINUE;
+
+        int tail = 0;
+        boolean isLoss = false;
+        for (int i = firstRow; i <= lastRow; ++i) {
+            for (int neighbour = i * sizeX + firstCol, end = i * sizeX + lastCol; neighbour <= end; ++neighbour) {
+                int neighbourCell = cells[neighbour];
+                if ((neighbourCell & (VISIBLE | FLAG)) != 0) continue;
+                if ((neighbourCell & BOMB) != 0) {
+                    isLoss = true;
+                }
+                else {
+                    cells[neighbour] |= VISIBLE;
+                    openList[tail++] = neighbour;
+                }
+            }
+        }
+        if (tail > 0) {
+            flood(tail);
+        }
+        else if (!isLoss) {
+            return RevealResult.CONTINUE; // nothing was left to reveal
+        }
 
-            if (current.nCloseBombs > 0) {
-                continue;
+        if (isLoss) {
+            for (int i = firstRow; i <= lastRow; ++i) {
+                for (int neighbour = i * sizeX + firstCol, end = i * sizeX + lastCol; neighbour <= end; ++neighbour) {
+                    if ((cells[neighbour] & (VISIBLE | FLAG | BOMB)) == BOMB) {
+                        cells[neighbour] |= VISIBLE;
+                        openList[nChangedTiles++] = neighbour;
+                    }
+                }
             }
+            return RevealResult.LOSS;
+        }
+        return nTilesToUncover == 0 ? RevealResult.WIN : RevealResult.CONTINUE;
+    }
 
-            for (int[] delta : deltas) {
+    /**
+     * Covers again the tiles in tiles[from] to tiles[to - 1], for an undo
+     */
+    void coverTiles(int[] tiles, int from, int to) {
+        nChangedTiles = to - from;
+        System.arraycopy(tiles, from, openList, 0, nChangedTiles);
+        for (int k = 0; k < nChangedTiles; ++k) {
+            int tile = openList[k];
+            cells[tile] &= ~VISIBLE;
+            if ((cells[tile] & BOMB) == 0) {
+                ++nTilesToUncover;
+            }
+        }
+        for (int k = 0; k < listeners.size(); ++k) {
+            listeners.get(k).tilesCovered(openList, nChangedTiles);
+        }
+    }
 
-                int i_child = visiting[0] + delta[0];
-                int j_child = visiting[1] + delta[1];
+    /**
+     * Reveals again the tiles in tiles[from] to tiles[to - 1], for a redo
+     */
+    void uncoverTiles(int[] tiles, int from, int to) {
+        nChangedTiles = to - from;
+        System.arraycopy(tiles, from, openList, 0, nChangedTiles);
+        for (int k = 0; k < nChangedTiles; ++k) {
+            int tile = openList[k];
+            cells[tile] |= VISIBLE;
+            if ((cells[tile] & BOMB) == 0) {
+                --nTilesToUncover;
+            }
+        }
+        for (int k = 0; k < listeners.size(); ++k) {
+            listeners.get(k).tilesRevealed(openList, nChangedTiles);
+        }
+    }
+
+    private void flipNeighbours(int start) {
+        cells[start] |= VISIBLE;
+        openList[0] = start;
+        flood(1);
+    }
+
+    /**
+     * Breadth-first reveal of an opening, over packed indexes, from the safe tiles in openList[0] to openList[tail - 1].
+     * Tiles are marked visible as they are queued, so each tile enters the queue at most once
+     * and the queue never needs more room than the board has tiles. It is left holding the revealed tiles.
+     */
+    private void flood(int tail) {
+        int head = 0;
 
-                if (i_child < 0 || i_child >= sizeY || j_child < 0 || j_child >= sizeX) {
-                    continue;
+        while (head < tail) {
+            int index = openList[head++];
+            --nTilesToUncover;
+
+            if ((cells[index] & N_CLOSE_BOMBS_MASK) > 0) {
+                continue;
+            }
+
+            // a tile with no close bombs cannot have a bomb around it, so all of its neighbours are safe to queue
+            int row = index / sizeX;
+            int col = index - row * sizeX;
+            int firstRow = row > 0 ? row - 1 : row;
+            int lastRow = row < sizeY - 1 ? row + 1 : row;
+            int firstCol = col > 0 ? col - 1 : col;
+            int lastCol = col < sizeX - 1 ? col + 1 : col;
+            for (int i = firstRow; i <= lastRow; ++i) {
+                for (int child = i * sizeX + firstCol, end = i * sizeX + lastCol; child <= end; ++child) {
+                    if ((cells[child] & VISIBLE) == 0) {
+                        cells[child] |= VISIBLE;
+                        openList[tail++] = child;
+                    }
                 }
+            }
+        }
+        nChangedTiles = tail;
+    }
 
-                openList.add(new int[]{i_child, j_child});
+    /**
+     * Hashes the bomb layout as a bitset, 64 tiles at a time
+     */
+    private long layoutHash() {
+        int nTiles = sizeX * sizeY;
+        long hash = nTiles;
+        for (int base = 0; base < nTiles; base += 64) {
+            long word = 0;
+            for (int k = base, end = Math.min(base + 64, nTiles); k < end; ++k) {
+                word |= (long) ((cells[k] & BOMB) >> BOMB_BIT) << (k - base);
             }
+            hash = SplitMix64.mix64(hash + word + 0x9E3779B97F4A7C15L);
         }
+        return hash;
     }
 
+    @Override
+    public long getSeed() {
+        return seed;
+    }
+    @Override
+    public int getnBombs() {
+        return nBombs;
+    }
+    @Override
+    public int getSafeTile() {
+        return safeTile;
+    }
+    @Override
+    public String getFingerprint() {
+        String fingerprint = sizeX + "x" + sizeY + "-" + nBombs + "-" + String.format("%016x", seed);
+        return isLaidOut ? fingerprint + "-" + safeTile + "-" + String.format("%016x", layoutHash()) : fingerprint;
+    }
+    @Override
+    public void setFirstMove(FirstMove firstMove) {
+        this.firstMove = firstMove;
+    }
+    @Override
+    public FirstMove getFirstMove() {
+        return firstMove;
+    }
+    @Override
+    public boolean isLaidOut() {
+        return isLaidOut;
+    }
     @Override
     public Cell getCell(int i, int j) {
-        return grid[i][j];
+        return new Cell(i * sizeX + j);
+    }
+
+    @Override
+    public boolean isVisible(int tile) {
+        return (cells[tile] & VISIBLE) != 0;
+    }
+
+    @Override
+    public boolean isBomb(int tile) {
+        return (cells[tile] & BOMB) != 0;
+    }
+
+    @Override
+    public boolean hasFlag(int tile) {
+        return (cells[tile] & FLAG) != 0;
+    }
+
+    @Override
+    public int getnCloseBombs(int tile) {
+        return cells[tile] & N_CLOSE_BOMBS_MASK;
+    }
+
+    @Override
+    public void toggleFlag(int tile) {
+        cells[tile] ^= FLAG;
+        openList[0] = tile;
+        nChangedTiles = 1;
+        for (int k = 0; k < listeners.size(); ++k) {
+            listeners.get(k).flagToggled(tile);
+        }
+    }
+    @Override
+    public int getnChangedTiles() {
+        return nChangedTiles;
+    }
+    @Override
+    public int getChangedTile(int k) {
+        return openList[k];
+    }
+    @Override
+    public void addListener(IBoardListener listener) {
+        listeners.add(listener);
+    }
+    @Override
+    public void removeListener(IBoardListener listener) {
+        listeners.remove(listener);
     }
     @Override
     public int nTilesToUncover() {
@@ -207,8 +914,14 @@ public class Board implements IBoard {
     }
     @Override
     public void setGrid(int sizeY, int sizeX) {
+        cancelPrepared();
         this.sizeX = sizeX;
         this.sizeY = sizeY;
-        grid = new Cell[sizeY][sizeX];
+        // the storage only grows, so switching back and forth between board sizes does not reallocate
+        if (cells == null || cells.length < sizeX * sizeY) {
+            cells = new byte[sizeX * sizeY];
+            openList = new int[sizeX * sizeY];
+            tileOrder = new int[sizeX * sizeY];
+        }
     }
 }
@@ -0,0 +1,157 @@
+package domain;
+
+import solver.Solver;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates no-guess layouts in the background: layouts that the solver clears from their start tile, without
+ * ever having to guess. Most random layouts need a guess, so layouts are drawn and rejected on worker threads,
+ * and a few ready ones are kept for every board size and number of bombs asked for.
+ * A layout is only a seed and a start tile: Board lays it out again from them.
+ * Sessions share the pool of getShared() unless given one, so that the process keeps one set of worker threads.
+ */
+public class BoardPool {
+
+    /**
+     * ready layouts kept per board size and number of bombs
+     */
+    private static final int CAPACITY = 4;
+
+    /**
+     * layouts drawn before a generation gives up, for boards too crowded to be solved without guessing
+     */
+    private static final int MAX_ATTEMPTS = 20_000;
+
+    /**
+     * boards larger than this are not generated: their layouts are too slow to check
+     */
+    private static final int MAX_TILES = 200 * 200;
+
+    /**
+     * A layout that needs no guess: the board laid out from seed around startTile, and opened at startTile
+     */
+    static final class Layout {
+        final long seed;
+        final int startTile;
+
+        Layout(long seed, int startTile) {
+            this.seed = seed;
+            this.startTile = startTile;
+        }
+    }
+
+    /**
+     * Layouts of one board size and number of bombs
+     */
+    private static final class Entry {
+        final ArrayBlockingQueue<Layout> ready = new ArrayBlockingQueue<>(CAPACITY);
+        final AtomicInteger nPending = new AtomicInteger();
+        volatile boolean isUnsolvable; // set once a generation gave up
+    }
+
+    private static BoardPool shared; // created on demand
+
+    private final ExecutorService executor;
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    public BoardPool() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    public BoardPool(int nThreads) {
+        executor = Executors.newFixedThreadPool(nThreads, runnable -> {
+            Thread thread = new Thread(runnable, "board-pool");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * @return the pool shared by the sessions of the process, which is never shut down
+     */
+    public static synchronized BoardPool getShared() {
+        if (shared == null) {
+            shared = new BoardPool();
+        }
+        return shared;
+    }
+
+    /**
+     * Starts generating layouts until CAPACITY of them are ready or being generated
+     */
+    void prepare(int sizeY, int sizeX, int nBombs) {
+        if (sizeX * sizeY > MAX_TILES || nBombs >= sizeX * sizeY) return;
+
+        Entry entry = entries.computeIfAbsent(key(sizeY, sizeX, nBombs), key -> new Entry());
+        while (!entry.isUnsolvable && entry.ready.size() + entry.nPending.get() < CAPACITY) {
+            entry.nPending.incrementAndGet();
+            executor.execute(() -> {
+                try {
+                    Layout layout = generate(sizeY, sizeX, nBombs);
+                    if (layout == null) {
+                        entry.isUnsolvable = true;
+                    }
+                    else {
+                        entry.ready.offer(layout);
+                    }
+                }
+                finally {
+                    entry.nPending.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    /**
+     * Never waits: the caller holds up the game, and lays a random board out instead when no layout is ready
+     * @return a ready layout, or null if none is ready yet. More are generated in the background either way
+     */
+    Layout take(int sizeY, int sizeX, int nBombs) {
+        Entry entry = entries.get(key(sizeY, sizeX, nBombs));
+        Layout layout = entry != null ? entry.ready.poll() : null;
+        prepare(sizeY, sizeX, nBombs);
+        return layout;
+    }
+
+    /**
+     * Stops the worker threads. Generations in progress are abandoned.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Draws layouts until the solver clears one without guessing
+     * @return the layout, or null if none was found within MAX_ATTEMPTS or the pool was shut down
+     */
+    private static Layout generate(int sizeY, int sizeX, int nBombs) {
+        Board board = new Board(sizeY, sizeX);
+        Solver solver = new Solver(board);
+        SplittableRandom random = new SplittableRandom();
+
+        for (int attempt = 0; attempt < MAX_ATTEMPTS && !Thread.currentThread().isInterrupted(); ++attempt) {
+            long seed = random.nextLong();
+            int startTile = random.nextInt(sizeX * sizeY);
+            board.initialize(nBombs, seed, startTile);
+            board.revealTile(startTile / sizeX, startTile % sizeX);
+            for (int tile = solver.getSafeTile(); tile >= 0; tile = solver.getSafeTile()) {
+                board.revealTile(tile / sizeX, tile % sizeX);
+            }
+            if (board.nTilesToUncover() == 0) {
+                return new Layout(seed, startTile);
+            }
+        }
+        return null;
+    }
+
+    private static long key(int sizeY, int sizeX, int nBombs) {
+        return (long) sizeY << 48 | (long) sizeX << 32 | nBombs;
+    }
+}
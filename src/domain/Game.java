@@ -1,35 +1,63 @@
 package domain;
 
 import interfaces.IBoard;
+import interfaces.IBoardListener;
 import interfaces.IGame;
+import interfaces.IGameListener;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Manages tile revealing events and state of a particular game
  */
 public class Game implements IGame {
 
-    private static Game instance = null;
-
     private Board board;
     private State state;
     private boolean isFirstMove;
+    private final History history;
+    private Journal journal; // null unless the session is journaled
+    private boolean isMovingInHistory; // while undoing or redoing
+    private final List<IGameListener> listeners = new ArrayList<>();
 
-    private Game() {
-        board = Board.getInstance();
+    Game(Board board) {
+        this.board = board;
+        history = new History(board);
         state = State.PLAYING;
         isFirstMove = true;
+        // flags are toggled on the cells, not through the game
+        board.addListener(new IBoardListener() {
+            @Override
+            public void flagToggled(int tile) {
+                if (!isMovingInHistory) {
+                    firePlayed(IGame.move(tile, FLAG));
+                }
+            }
+        });
     }
 
-    public static Game getInstance() {
-        if (instance == null) {
-            instance = new Game();
-        }
-        return instance;
+    void setJournal(Journal journal) {
+        this.journal = journal;
     }
 
     void reset() {
-        state = State.PLAYING;
         isFirstMove = true;
+        setState(State.PLAYING);
+        for (int k = 0; k < listeners.size(); ++k) {
+            listeners.get(k).gameStarted();
+        }
+    }
+
+    /**
+     * Puts the game back in a saved state. The undo history is not saved: it starts empty
+     */
+    void restore(State state, boolean isFirstMove) {
+        this.isFirstMove = isFirstMove;
+        setState(state);
+        for (int k = 0; k < listeners.size(); ++k) {
+            listeners.get(k).gameRestored();
+        }
     }
 
     @Override
@@ -37,7 +65,8 @@ public class Game implements IGame {
 
         var result = board.revealTile(i, j);
 
-        if (isFirstMove) { // guarantees a first good move
+        // guarantees a first good move. Only a FirstMove.RETRY board can lose here: the others are laid out around (i, j)
+        if (isFirstMove) {
             while (result == IBoard.RevealResult.LOSS) {
                 board.reinitialize();
                 result = board.revealTile(i, j);
@@ -46,11 +75,141 @@ public class Game implements IGame {
         }
 
 
+        setResult(result);
+        int tile = i * board.getSizeX() + j;
+        if (journal != null) {
+            journal.reveal(tile);
+        }
+        firePlayed(IGame.move(tile, REVEAL));
+    }
+
+    @Override
+    public void chord(int i, int j) {
+        // there is no number to chord before the first move
+        setResult(board.chord(i, j));
+        int tile = i * board.getSizeX() + j;
+        if (journal != null) {
+            journal.chord(tile);
+        }
+        firePlayed(IGame.move(tile, CHORD));
+    }
+
+    @Override
+    public BatchResult play(int[] moves, int count) {
+        int sizeX = board.getSizeX();
+        int tilesToUncover = board.nTilesToUncover();
+        int losingMove = -1;
+        int k = 0;
+        while (k < count) {
+            int move = moves[k];
+            int type = move & (1 << MOVE_TYPE_BITS) - 1;
+            // once the game is over, only undo and redo are played
+            if (state != State.PLAYING && state != State.PLACING_FLAGS && type != UNDO && type != REDO) break;
+            ++k;
+            int tile = move >>> MOVE_TYPE_BITS;
+            int i = tile / sizeX;
+            int j = tile - i * sizeX;
+            State previous = state;
+            switch (type) {
+                case REVEAL:
+                    revealTile(i, j);
+                    break;
+                case FLAG:
+                    if (!board.isVisible(tile)) {
+                        board.toggleFlag(tile);
+                    }
+                    break;
+                case CHORD:
+                    chord(i, j);
+                    break;
+                case UNDO:
+                    undo();
+                    break;
+                case REDO:
+                    redo();
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown move type: " + move);
+            }
+            if (state != previous) {
+                losingMove = state == State.LOST ? k - 1 : -1;
+            }
+        }
+        // a first move may lay the board out again, but never changes the number of safe tiles
+        return new BatchResult(k, tilesToUncover - board.nTilesToUncover(), state, losingMove);
+    }
+
+    @Override
+    public boolean undo() {
+        if (!history.canUndo()) return false;
+        isMovingInHistory = true;
+        try {
+            history.undo(state);
+        }
+        finally {
+            isMovingInHistory = false;
+        }
+        if (state == State.WON || state == State.LOST) {
+            setState(State.PLAYING);
+        }
+        if (journal != null) {
+            journal.undo();
+        }
+        firePlayed(IGame.move(0, UNDO));
+        return true;
+    }
+
+    @Override
+    public boolean redo() {
+        if (!history.canRedo()) return false;
+        State result;
+        isMovingInHistory = true;
+        try {
+            result = history.redo();
+        }
+        finally {
+            isMovingInHistory = false;
+        }
+        if (result != null) {
+            setState(result);
+        }
+        if (journal != null) {
+            journal.redo();
+        }
+        firePlayed(IGame.move(0, REDO));
+        return true;
+    }
+
+    History getHistory() {
+        return history;
+    }
+
+    boolean isMovingInHistory() {
+        return isMovingInHistory;
+    }
+
+    @Override
+    public boolean canUndo() {
+        return history.canUndo();
+    }
+
+    @Override
+    public boolean canRedo() {
+        return history.canRedo();
+    }
+
+    private void firePlayed(int move) {
+        for (int k = 0; k < listeners.size(); ++k) {
+            listeners.get(k).movePlayed(move);
+        }
+    }
+
+    private void setResult(IBoard.RevealResult result) {
         if (result == IBoard.RevealResult.WIN) {
-            state = State.WON;
+            setState(State.WON);
         }
         else if (result == IBoard.RevealResult.LOSS) {
-            state = State.LOST;
+            setState(State.LOST);
         }
     }
 
@@ -59,8 +218,29 @@ public class Game implements IGame {
         return state;
     }
 
+    @Override
+    public boolean isFirstMove() {
+        return isFirstMove;
+    }
+
     @Override
     public void setState(State state) {
+        State previous = this.state;
         this.state = state;
+        if (previous != state) {
+            for (int k = 0; k < listeners.size(); ++k) {
+                listeners.get(k).stateChanged(previous, state);
+            }
+        }
+    }
+
+    @Override
+    public void addListener(IGameListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(IGameListener listener) {
+        listeners.remove(listener);
     }
 }
@@ -0,0 +1,152 @@
+package domain;
+
+import interfaces.IBoardListener;
+import interfaces.IGame;
+
+import java.util.Arrays;
+
+/**
+ * Undo and redo history of a game, kept as one delta per move rather than as copies of the board.
+ * It follows the board through its listener: a reveal or a chord is stored as the tiles it revealed, a flag toggle as
+ * its tile. All the deltas share a single array, so a history costs 4 bytes per tile changed and 5 bytes per move.
+ * Undoing or redoing a move costs the tiles it changed. The history is cleared whenever the board is laid out again.
+ */
+class History implements IBoardListener {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    // what the game became with a move, stored when the move is undone
+    private static final byte NOT_OVER = 0;
+    private static final byte WON = 1;
+    private static final byte LOST = 2;
+
+    private final Board board;
+
+    // tiles changed by the moves, one move after the other. A flag toggle is stored as ~tile, which is negative
+    private int[] deltas = new int[INITIAL_CAPACITY];
+    private int[] moveEnds = new int[INITIAL_CAPACITY]; // end of each move's tiles in deltas
+    private byte[] results = new byte[INITIAL_CAPACITY];
+    private int nMoves;   // moves recorded, the ones undone included
+    private int position; // moves played and not undone
+    private long nRecorded; // moves recorded since the history was created, see getnRecorded()
+    private boolean isReplaying;
+
+    History(Board board) {
+        this.board = board;
+        board.addListener(this);
+    }
+
+    boolean canUndo() {
+        return position > 0;
+    }
+
+    boolean canRedo() {
+        return position < nMoves;
+    }
+
+    /**
+     * @return the number of moves played and not undone, which is the index of the next move
+     */
+    int getPosition() {
+        return position;
+    }
+
+    /**
+     * @return the number of moves recorded so far. Every new move drops the undone moves, so the moves that can be redone
+     * are the same as long as this does not change and the board is not laid out again
+     */
+    long getnRecorded() {
+        return nRecorded;
+    }
+
+    /**
+     * Takes back the last move played
+     * @param state the state of the game, which is the outcome of the move
+     */
+    void undo(IGame.State state) {
+        --position;
+        results[position] = state == IGame.State.WON ? WON : state == IGame.State.LOST ? LOST : NOT_OVER;
+        int start = getStart(position);
+        isReplaying = true;
+        try {
+            if (deltas[start] < 0) {
+                toggleFlag(~deltas[start]);
+            }
+            else {
+                board.coverTiles(deltas, start, moveEnds[position]);
+            }
+        }
+        finally {
+            isReplaying = false;
+        }
+    }
+
+    /**
+     * Plays the next undone move again
+     * @return the state the move ended the game in, or null if it did not end it
+     */
+    IGame.State redo() {
+        int start = getStart(position);
+        isReplaying = true;
+        try {
+            if (deltas[start] < 0) {
+                toggleFlag(~deltas[start]);
+            }
+            else {
+                board.uncoverTiles(deltas, start, moveEnds[position]);
+            }
+        }
+        finally {
+            isReplaying = false;
+        }
+        byte result = results[position++];
+        return result == WON ? IGame.State.WON : result == LOST ? IGame.State.LOST : null;
+    }
+
+    @Override
+    public void tilesRevealed(int[] tiles, int count) {
+        if (isReplaying) return;
+        int start = startMove(count);
+        System.arraycopy(tiles, 0, deltas, start, count);
+    }
+
+    @Override
+    public void flagToggled(int tile) {
+        if (isReplaying) return;
+        int start = startMove(1);
+        deltas[start] = ~tile;
+    }
+
+    @Override
+    public void boardRegenerated() {
+        nMoves = 0;
+        position = 0;
+    }
+
+    /**
+     * Drops the undone moves, which can no longer be redone, and makes room for a new move of count tiles
+     * @return where the tiles of the move go in deltas
+     */
+    private int startMove(int count) {
+        int start = getStart(position);
+        if (start + count > deltas.length) {
+            deltas = Arrays.copyOf(deltas, Math.max(2 * deltas.length, start + count));
+        }
+        if (position == moveEnds.length) {
+            moveEnds = Arrays.copyOf(moveEnds, 2 * position);
+            results = Arrays.copyOf(results, 2 * position);
+        }
+        moveEnds[position++] = start + count;
+        nMoves = position;
+        ++nRecorded;
+        return start;
+    }
+
+    private int getStart(int move) {
+        return move == 0 ? 0 : moveEnds[move - 1];
+    }
+
+    private void toggleFlag(int tile) {
+        board.toggleFlag(tile);
+    }
+}
@@ -0,0 +1,478 @@
+package domain;
+
+import interfaces.IBoard;
+import interfaces.ICell;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Unbounded board, made of square chunks that are only created once one of their tiles is revealed or flagged.
+ * Whether a tile holds a bomb is decided by a hash of the seed and the tile coordinates, so the layout needs no storage,
+ * any region can be regenerated exactly, and memory grows with the explored area only.
+ * The tiles around (0, 0) never hold a bomb, so a game can always start by revealing (0, 0).
+ * Coordinates are rows (i) and columns (j), and may be negative.
+ * Manager plays unbounded games on a window of it: Board holds the tiles of the window, copied by copyWindow(), and the
+ * changes made to them are set back here.
+ */
+public class InfiniteBoard {
+
+    private static final int CHUNK_BITS = 5;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * default cap on the number of tiles opened by a single reveal, see setMaxOpening()
+     */
+    private static final int DEFAULT_MAX_OPENING = 1 << 20;
+
+    private static final int CHUNK_WORDS = CHUNK_SIZE * CHUNK_SIZE / Long.SIZE; // of a bitset of the tiles of a chunk
+    // size of the fields written by write() before the chunks
+    private static final int SAVED_FIELDS_SIZE = 3 * Long.BYTES + 3 * Integer.BYTES;
+    private static final int SAVED_CHUNK_SIZE = Long.BYTES + 2 * CHUNK_WORDS * Long.BYTES; // key, visible tiles, flags
+
+    // same tile layout as Board: the low nibble holds the number of close bombs
+    private static final int N_CLOSE_BOMBS_MASK = 0x0F;
+    private static final int BOMB = 0x10;
+    private static final int VISIBLE = 0x20;
+    private static final int FLAG = 0x40;
+
+    /**
+     * Lightweight view of a single tile. Reading a tile of an untouched chunk does not create the chunk.
+     */
+    private class Cell implements ICell {
+        private final int i;
+        private final int j;
+
+        Cell(int i, int j) {
+            this.i = i;
+            this.j = j;
+        }
+
+        @Override
+        public int getnCloseBombs() {
+            return peek(i, j) & N_CLOSE_BOMBS_MASK;
+        }
+        @Override
+        public boolean isBomb() {
+            return isBombAt(i, j);
+        }
+        @Override
+        public boolean isVisible() {
+            return (peek(i, j) & VISIBLE) != 0;
+        }
+        @Override
+        public boolean hasFlag() {
+            return (peek(i, j) & FLAG) != 0;
+        }
+        @Override
+        public void toggleFlag() {
+            byte[] chunk = getChunk(i, j);
+            chunk[localIndex(i, j)] ^= FLAG;
+        }
+    }
+
+    private final long seed;
+    private final long bombThreshold; // a tile holds a bomb when its 53-bit hash falls below this value
+    private final HashMap<Long, byte[]> chunks = new HashMap<>();
+    private int maxOpening = DEFAULT_MAX_OPENING;
+
+    // the last chunk used, since reveals touch the same chunk many times in a row
+    private long lastKey;
+    private byte[] lastChunk;
+
+    private long[] openList = new long[CHUNK_SIZE * CHUNK_SIZE]; // tiles revealed by the last reveal, packed, grown as needed
+    private int nChangedTiles;
+    // revealed tiles without close bombs whose neighbours are still to be revealed, in frontier[frontierHead] to
+    // frontier[frontierTail - 1]. The queue outlives a reveal that reaches the cap, see setMaxOpening()
+    private long[] frontier = new long[CHUNK_SIZE * CHUNK_SIZE];
+    private int frontierHead;
+    private int frontierTail;
+    private long nTilesRevealed;
+    private int[] windowStack; // tiles of a window whose openings are carried on by openWindow(), grown as needed
+
+    /**
+     * @param density probability for a tile to hold a bomb, between 0 and 1
+     */
+    public InfiniteBoard(long seed, double density) {
+        this(seed, toThreshold(density));
+    }
+
+    private InfiniteBoard(long seed, long bombThreshold) {
+        this.seed = seed;
+        this.bombThreshold = bombThreshold;
+    }
+
+    private static long toThreshold(double density) {
+        if (density < 0 || density > 1) {
+            throw new IllegalArgumentException("density must be between 0 and 1: " + density);
+        }
+        return (long) (density * (1L << 53));
+    }
+
+    /**
+     * Caps the number of tiles a single reveal opens. At low densities an opening may never end on an unbounded board:
+     * past the cap, the tiles without close bombs revealed last are kept, and the next reveal, of any tile, carries the
+     * opening on from them, up to the cap again. See isOpeningPending().
+     */
+    public void setMaxOpening(int maxOpening) {
+        this.maxOpening = maxOpening;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Reveals the tile, if it is covered, then carries on the opening it starts, or the one left pending by an earlier
+     * reveal, up to the cap
+     */
+    public IBoard.RevealResult revealTile(int i, int j) {
+
+        nChangedTiles = 0;
+        IBoard.RevealResult result = IBoard.RevealResult.CONTINUE;
+        byte[] chunk = getChunk(i, j);
+        int local = localIndex(i, j);
+        if ((chunk[local] & VISIBLE) == 0) {
+            if ((chunk[local] & BOMB) != 0) {
+                result = IBoard.RevealResult.LOSS;
+            }
+            uncover(i, j, chunk, local);
+        }
+        if (result != IBoard.RevealResult.LOSS) {
+            flipNeighbours();
+        }
+        nTilesRevealed += nChangedTiles;
+
+        return result;
+    }
+
+    /**
+     * Carries on the openings that reached a window: the visible tiles without close bombs in it may have been revealed
+     * on a window that did not show their neighbours, whose own openings stop at its edges. Openings are carried on
+     * within the window only, so that this takes a time bounded by its size: the windows that show the tiles beyond
+     * carry them on in turn
+     */
+    void openWindow(int top, int left, int sizeY, int sizeX) {
+        int nTiles = sizeY * sizeX;
+        if (windowStack == null || windowStack.length < nTiles) {
+            windowStack = new int[nTiles];
+        }
+        int nStacked = 0;
+        for (int i = 0; i < sizeY; ++i) {
+            for (int j = 0; j < sizeX; ++j) {
+                if ((getChunk(top + i, left + j)[localIndex(top + i, left + j)] & (VISIBLE | BOMB | N_CLOSE_BOMBS_MASK))
+                        == VISIBLE) {
+                    windowStack[nStacked++] = i * sizeX + j;
+                }
+            }
+        }
+        while (nStacked > 0) {
+            int tile = windowStack[--nStacked];
+            int row = top + tile / sizeX;
+            int col = left + tile % sizeX;
+            for (int i = row - 1; i <= row + 1; ++i) {
+                for (int j = col - 1; j <= col + 1; ++j) {
+                    byte[] chunk = getChunk(i, j);
+                    int local = localIndex(i, j);
+                    if ((chunk[local] & VISIBLE) != 0) continue;
+                    chunk[local] |= VISIBLE;
+                    ++nTilesRevealed;
+                    // each tile is stacked once, when it is revealed
+                    if ((chunk[local] & (BOMB | N_CLOSE_BOMBS_MASK)) == 0 && i >= top && i < top + sizeY
+                            && j >= left && j < left + sizeX) {
+                        windowStack[nStacked++] = (i - top) * sizeX + j - left;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return whether an opening stopped by the cap still has tiles to reveal, which the next reveal carries on
+     */
+    public boolean isOpeningPending() {
+        return frontierHead < frontierTail;
+    }
+
+    /**
+     * Breadth-first reveal from the tiles of the frontier, across chunk boundaries, until the frontier is empty or the
+     * reveal reaches the cap. Tiles are marked visible as they are queued, so each tile enters the queue at most once.
+     */
+    private void flipNeighbours() {
+
+        while (frontierHead < frontierTail && nChangedTiles < maxOpening) {
+            long tile = frontier[frontierHead++];
+            int row = (int) (tile >> 32);
+            int col = (int) tile;
+
+            for (int i = row - 1; i <= row + 1; ++i) {
+                for (int j = col - 1; j <= col + 1; ++j) {
+                    byte[] chunk = getChunk(i, j);
+                    int local = localIndex(i, j);
+                    if ((chunk[local] & VISIBLE) == 0) {
+                        uncover(i, j, chunk, local);
+                    }
+                }
+            }
+        }
+        if (frontierHead == frontierTail) {
+            frontierHead = 0;
+            frontierTail = 0;
+        }
+    }
+
+    /**
+     * Reveals a covered tile, and adds it to the frontier if it has no close bombs
+     */
+    private void uncover(int i, int j, byte[] chunk, int local) {
+        chunk[local] |= VISIBLE;
+        if (nChangedTiles == openList.length) {
+            openList = Arrays.copyOf(openList, 2 * openList.length);
+        }
+        openList[nChangedTiles++] = pack(i, j);
+        if ((chunk[local] & (BOMB | N_CLOSE_BOMBS_MASK)) != 0) return;
+
+        enqueue(pack(i, j));
+    }
+
+    private void enqueue(long tile) {
+        if (frontierTail == frontier.length) {
+            // the tiles already expanded are dropped first
+            if (frontierHead > 0) {
+                System.arraycopy(frontier, frontierHead, frontier, 0, frontierTail - frontierHead);
+                frontierTail -= frontierHead;
+                frontierHead = 0;
+            }
+            else {
+                frontier = Arrays.copyOf(frontier, 2 * frontier.length);
+            }
+        }
+        frontier[frontierTail++] = tile;
+    }
+
+    public ICell getCell(int i, int j) {
+        return new Cell(i, j);
+    }
+
+    /**
+     * Copies the tiles of a window, packed as the tiles of Board: the close bomb counts of its edge tiles take the tiles
+     * beyond the window into account. The chunks of the window are created
+     * @param tiles receives the tiles of the window, in row-major order
+     */
+    void copyWindow(int top, int left, int sizeY, int sizeX, byte[] tiles) {
+        for (int i = 0; i < sizeY; ++i) {
+            for (int j = 0; j < sizeX; ++j) {
+                tiles[i * sizeX + j] = getChunk(top + i, left + j)[localIndex(top + i, left + j)];
+            }
+        }
+    }
+
+    /**
+     * Sets whether a tile is revealed, as a move on a window of the board left it. Openings are not carried on
+     */
+    void setVisible(int i, int j, boolean isVisible) {
+        byte[] chunk = getChunk(i, j);
+        int local = localIndex(i, j);
+        if (((chunk[local] & VISIBLE) != 0) == isVisible) return;
+        chunk[local] ^= VISIBLE;
+        nTilesRevealed += isVisible ? 1 : -1;
+    }
+
+    void setFlag(int i, int j, boolean hasFlag) {
+        byte[] chunk = getChunk(i, j);
+        int local = localIndex(i, j);
+        chunk[local] = (byte) (hasFlag ? chunk[local] | FLAG : chunk[local] & ~FLAG);
+    }
+
+    /**
+     * @return the number of tiles revealed by the last reveal
+     */
+    public int getnChangedTiles() {
+        return nChangedTiles;
+    }
+
+    /**
+     * @return the k-th tile revealed by the last reveal, packed as (i << 32) | j
+     */
+    public long getChangedTile(int k) {
+        return openList[k];
+    }
+
+    public long nTilesRevealed() {
+        return nTilesRevealed;
+    }
+
+    /**
+     * @return the number of chunks created so far, which is what the board's memory use grows with
+     */
+    public int nChunks() {
+        return chunks.size();
+    }
+
+    /**
+     * @return the number of bytes write() takes
+     */
+    long getSavedSize() {
+        return SAVED_FIELDS_SIZE + (long) SAVED_CHUNK_SIZE * chunks.size()
+                + (long) Long.BYTES * (frontierTail - frontierHead);
+    }
+
+    /**
+     * Writes the board at the position of the buffer: its fields, its chunks, as the visible tiles and the flags of
+     * each, and the tiles of a pending opening. The bombs are not written, they are laid out again from the seed by read()
+     */
+    void write(ByteBuffer buffer) {
+        buffer.putLong(seed).putLong(bombThreshold).putLong(nTilesRevealed).putInt(maxOpening)
+                .putInt(chunks.size()).putInt(frontierTail - frontierHead);
+        for (Map.Entry<Long, byte[]> entry : chunks.entrySet()) {
+            buffer.putLong(entry.getKey());
+            byte[] chunk = entry.getValue();
+            for (int bit : new int[] {VISIBLE, FLAG}) {
+                for (int word = 0; word < CHUNK_WORDS; ++word) {
+                    long bits = 0;
+                    for (int k = 0; k < Long.SIZE; ++k) {
+                        if ((chunk[word * Long.SIZE + k] & bit) != 0) {
+                            bits |= 1L << k;
+                        }
+                    }
+                    buffer.putLong(bits);
+                }
+            }
+        }
+        for (int k = frontierHead; k < frontierTail; ++k) {
+            buffer.putLong(frontier[k]);
+        }
+    }
+
+    /**
+     * Reads a board written by write(), from the position of the buffer
+     * @return the board, or null if the data does not hold a valid board
+     */
+    static InfiniteBoard read(ByteBuffer buffer) {
+        if (buffer.remaining() < SAVED_FIELDS_SIZE) return null;
+        long savedSeed = buffer.getLong();
+        long savedThreshold = buffer.getLong();
+        long savedTilesRevealed = buffer.getLong();
+        int savedMaxOpening = buffer.getInt();
+        int nChunks = buffer.getInt();
+        int nPending = buffer.getInt();
+        if (savedThreshold < 0 || savedThreshold > 1L << 53 || savedTilesRevealed < 0 || savedMaxOpening < 0
+                || nChunks < 0 || nPending < 0
+                || buffer.remaining() < (long) SAVED_CHUNK_SIZE * nChunks + (long) Long.BYTES * nPending) {
+            return null;
+        }
+
+        InfiniteBoard board = new InfiniteBoard(savedSeed, savedThreshold);
+        board.nTilesRevealed = savedTilesRevealed;
+        board.maxOpening = savedMaxOpening;
+        for (int n = 0; n < nChunks; ++n) {
+            long key = buffer.getLong();
+            byte[] chunk = board.generateChunk((int) (key >> 32) << CHUNK_BITS, (int) key << CHUNK_BITS);
+            for (int bit : new int[] {VISIBLE, FLAG}) {
+                for (int word = 0; word < CHUNK_WORDS; ++word) {
+                    for (long bits = buffer.getLong(); bits != 0; bits &= bits - 1) {
+                        chunk[word * Long.SIZE + Long.numberOfTrailingZeros(bits)] |= bit;
+                    }
+                }
+            }
+            board.chunks.put(key, chunk);
+        }
+        for (int k = 0; k < nPending; ++k) {
+            board.enqueue(buffer.getLong());
+        }
+        return board;
+    }
+
+    public static long pack(int i, int j) {
+        return ((long) i << 32) | (j & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return the packed tile, from its chunk if it exists, or computed from the seed otherwise
+     */
+    private int peek(int i, int j) {
+        long key = chunkKey(i, j);
+        byte[] chunk = key == lastKey && lastChunk != null ? lastChunk : chunks.get(key);
+        if (chunk != null) {
+            return chunk[localIndex(i, j)];
+        }
+        int tile = isBombAt(i, j) ? BOMB : 0;
+        return tile | countCloseBombs(i, j);
+    }
+
+    private byte[] getChunk(int i, int j) {
+        long key = chunkKey(i, j);
+        if (key == lastKey && lastChunk != null) {
+            return lastChunk;
+        }
+        byte[] chunk = chunks.get(key);
+        if (chunk == null) {
+            chunk = generateChunk(i & ~CHUNK_MASK, j & ~CHUNK_MASK);
+            chunks.put(key, chunk);
+        }
+        lastKey = key;
+        lastChunk = chunk;
+        return chunk;
+    }
+
+    /**
+     * Lays out the chunk whose top left tile is (top, left). The bombs of a one tile halo around the chunk are
+     * computed too, to count the close bombs of its edge tiles without creating the neighbouring chunks.
+     */
+    private byte[] generateChunk(int top, int left) {
+        final int haloSize = CHUNK_SIZE + 2;
+        boolean[] bombs = new boolean[haloSize * haloSize];
+        for (int i = 0; i < haloSize; ++i) {
+            for (int j = 0; j < haloSize; ++j) {
+                bombs[i * haloSize + j] = isBombAt(top + i - 1, left + j - 1);
+            }
+        }
+
+        byte[] chunk = new byte[CHUNK_SIZE * CHUNK_SIZE];
+        for (int i = 0; i < CHUNK_SIZE; ++i) {
+            for (int j = 0; j < CHUNK_SIZE; ++j) {
+                int center = (i + 1) * haloSize + j + 1;
+                int count = 0;
+                for (int di = -haloSize; di <= haloSize; di += haloSize) {
+                    for (int dj = -1; dj <= 1; ++dj) {
+                        if ((di != 0 || dj != 0) && bombs[center + di + dj]) {
+                            ++count;
+                        }
+                    }
+                }
+                chunk[i * CHUNK_SIZE + j] = (byte) (count | (bombs[center] ? BOMB : 0));
+            }
+        }
+        return chunk;
+    }
+
+    private int countCloseBombs(int row, int col) {
+        int count = 0;
+        for (int i = row - 1; i <= row + 1; ++i) {
+            for (int j = col - 1; j <= col + 1; ++j) {
+                if ((i != row || j != col) && isBombAt(i, j)) {
+                    ++count;
+                }
+            }
+        }
+        return count;
+    }
+
+    private boolean isBombAt(int i, int j) {
+        if (i >= -1 && i <= 1 && j >= -1 && j <= 1) {
+            return false; // the starting opening
+        }
+        return (SplitMix64.mix64(seed ^ pack(i, j) * 0x9E3779B97F4A7C15L) >>> 11) < bombThreshold;
+    }
+
+    private static long chunkKey(int i, int j) {
+        return pack(i >> CHUNK_BITS, j >> CHUNK_BITS);
+    }
+
+    private static int localIndex(int i, int j) {
+        return (i & CHUNK_MASK) * CHUNK_SIZE + (j & CHUNK_MASK);
+    }
+}
@@ -0,0 +1,521 @@
+package domain;
+
+import interfaces.IBoardListener;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Write-ahead journal of the moves of a session, from which the session is taken up again after a crash.
+ * The journal file holds a checkpoint, the session as written by Manager.write(), followed by the moves played since,
+ * 8 bytes each. Moves are queued by the thread playing and written by a thread of their own, which commits all the moves
+ * queued since its last write at once: playing never waits for the disk.
+ * Reveals, chords, flag toggles, undos, redos, flag mode toggles, level transitions and the scrolls of unbounded games
+ * are replayed on the checkpoint,
+ * which they change the same way as when they were played, since every layout is drawn from the seed sequence of the
+ * board. The other changes, such as new games and settings, write a new checkpoint instead, as does an undo or a redo
+ * that reaches back before one of them.
+ * Every CHECKPOINT_INTERVAL moves, and after moves that reveal an eighth of the board between them, the journal is
+ * compacted: a recovery reads one checkpoint and replays at most CHECKPOINT_INTERVAL moves, which reveal fewer tiles than
+ * a checkpoint holds. Compaction checkpoints are written by the writer thread from a copy of the session of its own,
+ * on which it replays the moves it writes, so the thread playing only ever queues 8 bytes per move.
+ * A new checkpoint goes to a temporary file first, which then replaces the journal. A write that fails is reported by
+ * getFailure(), and the whole journal is written again with the next moves.
+ */
+final class Journal implements IBoardListener {
+
+    private static final int MAGIC = 0x4D534A4E; // "MSJN"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 3 * Integer.BYTES; // magic, version and size of the checkpoint
+    private static final int ENTRY_SIZE = Long.BYTES;
+    static final int CHECKPOINT_INTERVAL = 1024;
+    private static final int CHECKPOINT_REVEALS_SHIFT = 3; // an eighth of the board
+
+    // types of the journal entries. An entry packs its tile in its high int, and its type and a check of both in its low int
+    private static final int REVEAL = 1;
+    private static final int CHORD = 2;
+    private static final int FLAG = 3;
+    private static final int NEXT_LEVEL = 4;
+    private static final int FLAG_MODE = 5;
+    private static final int UNDO = 6;
+    private static final int REDO = 7;
+    private static final int SCROLL = 8; // the tile holds the rows and the columns scrolled, 16 bits each
+    private static final int COMPACT = 9; // asks the writer for a checkpoint at this point, and is not written
+    private static final int CHECK_MASK = 0xFFFFFF;
+
+    private final Path file;
+    private final Manager manager;
+    private final Game game;
+    private final Board board;
+    private final Thread writer;
+    private int nEntriesSinceCheckpoint;
+    private long nRevealsSinceCheckpoint;
+
+    // the moves that can be undone and redone on the session as recovered from the journal file, and on the writer's
+    // copy of the session, which only starts over with the checkpoints made by the thread playing
+    private final HistoryMark fileMark = new HistoryMark();
+    private final HistoryMark copyMark = new HistoryMark();
+
+    // handed over to the writer, guarded by this
+    private long[] pendingEntries = new long[64];
+    private int nPendingEntries;
+    private ByteBuffer pendingCheckpoint; // supersedes the entries queued before it
+    private boolean isClosed;
+    private IOException failure; // of the last write, if it failed
+
+    // used by the writer only
+    private final Board copyBoard = new Board(1, 1);
+    private final Game copyGame = new Game(copyBoard);
+    private final Manager copyManager = new Manager(copyBoard, copyGame);
+    private ByteBuffer fileCheckpoint; // the checkpoint of the journal file
+    private long[] fileEntries = new long[64]; // the entries of the journal file after its checkpoint
+    private int nFileEntries;
+    private boolean isFileStale; // the last write failed, so the file must be written again whole
+    private long[] writtenEntries = new long[64];
+    private ByteBuffer entryBuffer = ByteBuffer.allocateDirect(64 * ENTRY_SIZE);
+    private FileChannel channel;
+
+    /**
+     * The moves of a game that a session taken up from a checkpoint can undo and redo: those made after the checkpoint,
+     * since a checkpoint holds no undo history
+     */
+    private static final class HistoryMark {
+
+        private int firstMove; // index in the history of the first move made after the checkpoint
+        private boolean hasOlderRedo; // whether moves undone before the checkpoint can still be redone
+        private long nRecorded;
+
+        void set(History history) {
+            firstMove = history.getPosition();
+            hasOlderRedo = history.canRedo();
+            nRecorded = history.getnRecorded();
+        }
+
+        /**
+         * The board was laid out again, in the recovered session as in the live one: neither has any history left
+         */
+        void clear() {
+            firstMove = 0;
+            hasOlderRedo = false;
+        }
+
+        /**
+         * @return whether the move just undone was made after the checkpoint
+         */
+        boolean isUndone(History history) {
+            return history.getPosition() >= firstMove;
+        }
+
+        /**
+         * @return whether the move just redone was undone after the checkpoint
+         */
+        boolean isRedone(History history) {
+            // a new move since the checkpoint dropped the moves undone before it
+            return !hasOlderRedo || history.getnRecorded() != nRecorded;
+        }
+    }
+
+    /**
+     * Starts the journal of a session with a checkpoint of the session as it is
+     */
+    Journal(Path file, Manager manager, Game game, Board board) {
+        this.file = file.toAbsolutePath();
+        this.manager = manager;
+        this.game = game;
+        this.board = board;
+        checkpoint();
+        board.addListener(this);
+        game.setJournal(this);
+        manager.setJournal(this);
+        writer = new Thread(this::write, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Puts the session back as journaled: the checkpoint, then the moves after it. Moves cut short by a crash are ignored.
+     * The file is read at once rather than mapped, since a mapping would outlive the recovery and keep the journal from
+     * being replaced on some systems.
+     * @return false, leaving the session unchanged, if the file does not hold a journal of this version
+     */
+    static boolean recover(Path file, Manager manager, Game game, Board board) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) return false;
+            buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // reads until the buffer is full, or until the end of a file cut short meanwhile
+            }
+            buffer.flip();
+        }
+        int size = buffer.limit();
+        if (size < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) return false;
+        int checkpointSize = buffer.getInt();
+        if (checkpointSize < 0 || checkpointSize > buffer.remaining()) return false;
+
+        int entries = HEADER_SIZE + checkpointSize;
+        buffer.limit(entries);
+        if (!manager.read(buffer)) return false;
+        buffer.limit(size);
+        for (int position = entries; position + ENTRY_SIZE <= size; position += ENTRY_SIZE) {
+            if (!replay(buffer.getLong(position), manager, game, board)) break;
+        }
+        return true;
+    }
+
+    void reveal(int tile) {
+        add(REVEAL, tile);
+    }
+
+    void chord(int tile) {
+        add(CHORD, tile);
+    }
+
+    void nextLevel() {
+        add(NEXT_LEVEL, 0);
+    }
+
+    void toggleFlagMode() {
+        add(FLAG_MODE, 0);
+    }
+
+    void scroll(int di, int dj) {
+        if (di != (short) di || dj != (short) dj) {
+            checkpoint();
+            return;
+        }
+        add(SCROLL, di << 16 | dj & 0xFFFF);
+    }
+
+    /**
+     * Journals the move the game just undid. A move made before the last checkpoint of the thread playing cannot be
+     * undone on the writer's copy, so its undo is a new checkpoint
+     */
+    void undo() {
+        History history = game.getHistory();
+        if (fileMark.isUndone(history)) {
+            add(UNDO, 0);
+        }
+        else if (copyMark.isUndone(history)) {
+            add(UNDO, 0);
+            compact();
+        }
+        else {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Journals the move the game just redid, as undo() does
+     */
+    void redo() {
+        History history = game.getHistory();
+        if (fileMark.isRedone(history)) {
+            add(REDO, 0);
+        }
+        else if (copyMark.isRedone(history)) {
+            add(REDO, 0);
+            compact();
+        }
+        else {
+            checkpoint();
+        }
+    }
+
+    @Override
+    public void tilesRevealed(int[] tiles, int count) {
+        // the move that revealed them is added after this
+        nRevealsSinceCheckpoint += count;
+    }
+
+    @Override
+    public void flagToggled(int tile) {
+        // the flags toggled by an undo or a redo are part of it
+        if (!game.isMovingInHistory()) {
+            add(FLAG, tile);
+        }
+    }
+
+    @Override
+    public void boardRegenerated() {
+        fileMark.clear();
+        copyMark.clear();
+    }
+
+    /**
+     * Queues a checkpoint of the session as it is, which replaces the journal once written
+     */
+    void checkpoint() {
+        ByteBuffer checkpoint = ByteBuffer.allocate((int) (HEADER_SIZE + manager.getSavedSize()));
+        checkpoint.putInt(MAGIC).putInt(VERSION).putInt(checkpoint.capacity() - HEADER_SIZE);
+        manager.write(checkpoint);
+        checkpoint.flip();
+        nEntriesSinceCheckpoint = 0;
+        nRevealsSinceCheckpoint = 0;
+        fileMark.set(game.getHistory());
+        copyMark.set(game.getHistory());
+        synchronized (this) {
+            pendingCheckpoint = checkpoint;
+            nPendingEntries = 0;
+            notifyAll();
+        }
+    }
+
+    /**
+     * @return the error of the last write, or null if it succeeded. The journal keeps being written after an error
+     */
+    synchronized IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Stops journaling the session, once the moves queued are written
+     * @throws IOException the last write error, if the journal could not be written
+     */
+    void close() throws IOException {
+        board.removeListener(this);
+        game.setJournal(null);
+        manager.setJournal(null);
+        synchronized (this) {
+            isClosed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (channel != null) {
+            channel.close();
+        }
+        synchronized (this) {
+            if (failure != null) throw failure;
+        }
+    }
+
+    private void add(int type, int tile) {
+        queue((long) tile << 32 | (type << 24 | check(type, tile)) & 0xFFFFFFFFL);
+        if (++nEntriesSinceCheckpoint >= CHECKPOINT_INTERVAL
+                || nRevealsSinceCheckpoint > (long) board.getSizeX() * board.getSizeY() >> CHECKPOINT_REVEALS_SHIFT) {
+            compact();
+        }
+    }
+
+    /**
+     * Has the writer replace the journal with a checkpoint of the session as it is at this point
+     */
+    private void compact() {
+        queue((long) COMPACT << 24 | check(COMPACT, 0));
+        nEntriesSinceCheckpoint = 0;
+        nRevealsSinceCheckpoint = 0;
+        fileMark.set(game.getHistory());
+    }
+
+    private void queue(long entry) {
+        synchronized (this) {
+            if (nPendingEntries == pendingEntries.length) {
+                pendingEntries = Arrays.copyOf(pendingEntries, 2 * nPendingEntries);
+            }
+            pendingEntries[nPendingEntries++] = entry;
+            // the writer only waits for a first entry
+            if (nPendingEntries == 1) {
+                notifyAll();
+            }
+        }
+    }
+
+    private static int check(int type, int tile) {
+        int hash = (tile ^ type << 24) * 0x9E3779B1;
+        return (hash ^ hash >>> 15) & CHECK_MASK;
+    }
+
+    private static int getType(long entry) {
+        return (int) entry >>> 24;
+    }
+
+    /**
+     * @return false if the entry is not a valid entry, such as the end of a write cut short
+     */
+    private static boolean replay(long entry, Manager manager, Game game, Board board) {
+        int tile = (int) (entry >>> 32);
+        int type = getType(entry);
+        int nTiles = board.getSizeX() * board.getSizeY();
+        if (((int) entry & CHECK_MASK) != check(type, tile)) return false;
+        if (type == SCROLL) {
+            manager.scroll(tile >> 16, (short) tile);
+            return true;
+        }
+        if (tile < 0 || tile >= nTiles) return false;
+
+        int i = tile / board.getSizeX();
+        int j = tile % board.getSizeX();
+        switch (type) {
+            case REVEAL:
+                game.revealTile(i, j);
+                return true;
+            case CHORD:
+                game.chord(i, j);
+                return true;
+            case FLAG:
+                board.toggleFlag(tile);
+                return true;
+            case NEXT_LEVEL:
+                manager.setNextLevel();
+                return true;
+            case FLAG_MODE:
+                manager.toggleFlagMode();
+                return true;
+            case UNDO:
+                game.undo();
+                return true;
+            case REDO:
+                game.redo();
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Body of the writer thread: writes what was queued since its last write, until the journal is closed
+     */
+    private void write() {
+        while (true) {
+            ByteBuffer checkpoint;
+            long[] entries;
+            int nEntries;
+            synchronized (this) {
+                while (nPendingEntries == 0 && pendingCheckpoint == null && !isClosed) {
+                    try {
+                        wait();
+                    }
+                    catch (InterruptedException e) {
+                        // only close() stops the writer, after the last moves are written
+                    }
+                }
+                if (nPendingEntries == 0 && pendingCheckpoint == null) return;
+                checkpoint = pendingCheckpoint;
+                pendingCheckpoint = null;
+                entries = pendingEntries;
+                nEntries = nPendingEntries;
+                pendingEntries = writtenEntries;
+                nPendingEntries = 0;
+            }
+            writtenEntries = entries;
+
+            boolean isRewritten = isFileStale;
+            if (checkpoint != null) {
+                ByteBuffer session = checkpoint.duplicate();
+                session.position(HEADER_SIZE);
+                copyManager.read(session);
+                fileCheckpoint = checkpoint;
+                nFileEntries = 0;
+                isRewritten = true;
+            }
+            int nWrittenEntries = nFileEntries;
+            for (int k = 0; k < nEntries; ++k) {
+                if (getType(entries[k]) == COMPACT) {
+                    fileCheckpoint = copyCheckpoint(fileCheckpoint);
+                    nFileEntries = 0;
+                    isRewritten = true;
+                }
+                else {
+                    replay(entries[k], copyManager, copyGame, copyBoard);
+                    addFileEntry(entries[k]);
+                }
+            }
+
+            try {
+                if (isRewritten) {
+                    writeCheckpoint(fileCheckpoint.duplicate(), fileEntries, 0, nFileEntries);
+                }
+                else {
+                    appendEntries(fileEntries, nWrittenEntries, nFileEntries);
+                }
+                isFileStale = false;
+                synchronized (this) {
+                    failure = null;
+                }
+            }
+            catch (IOException e) {
+                isFileStale = true;
+                synchronized (this) {
+                    failure = e;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param storage the last checkpoint, whose storage is reused if it is large enough
+     * @return a checkpoint of the writer's copy of the session
+     */
+    private ByteBuffer copyCheckpoint(ByteBuffer storage) {
+        int size = (int) (HEADER_SIZE + copyManager.getSavedSize());
+        ByteBuffer checkpoint = storage != null && storage.capacity() >= size ? storage : ByteBuffer.allocate(size);
+        checkpoint.clear();
+        checkpoint.putInt(MAGIC).putInt(VERSION).putInt(size - HEADER_SIZE);
+        copyManager.write(checkpoint);
+        checkpoint.flip();
+        return checkpoint;
+    }
+
+    private void addFileEntry(long entry) {
+        if (nFileEntries == fileEntries.length) {
+            fileEntries = Arrays.copyOf(fileEntries, 2 * nFileEntries);
+        }
+        fileEntries[nFileEntries++] = entry;
+    }
+
+    private void writeCheckpoint(ByteBuffer checkpoint, long[] entries, int from, int to) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            while (checkpoint.hasRemaining()) {
+                out.write(checkpoint);
+            }
+            writeEntries(out, entries, from, to);
+            out.force(false);
+        }
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void appendEntries(long[] entries, int from, int to) throws IOException {
+        writeEntries(channel, entries, from, to);
+        channel.force(false);
+    }
+
+    private void writeEntries(FileChannel out, long[] entries, int from, int to) throws IOException {
+        int size = (to - from) * ENTRY_SIZE;
+        if (entryBuffer.capacity() < size) {
+            entryBuffer = ByteBuffer.allocateDirect(Integer.highestOneBit(size) * 2);
+        }
+        entryBuffer.clear();
+        for (int k = from; k < to; ++k) {
+            entryBuffer.putLong(entries[k]);
+        }
+        entryBuffer.flip();
+        while (entryBuffer.hasRemaining()) {
+            out.write(entryBuffer);
+        }
+    }
+}
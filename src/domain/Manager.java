@@ -1,7 +1,13 @@
 package domain;
 
+import interfaces.IBoardListener;
+import interfaces.IGame;
+import interfaces.IGameListener;
 import interfaces.IManager;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+
 public class Manager implements IManager {
 
 
@@ -20,6 +26,15 @@ public class Manager implements IManager {
 
     private static final int WIN_LEVEL = 5;
 
+    // size of the fields written by write() before the board, or before the window of an unbounded game
+    private static final int SAVED_FIELDS_SIZE = 7 + 4 * Integer.BYTES;
+    private static final int SAVED_WINDOW_SIZE = 2 * Integer.BYTES;
+
+    /**
+     * cap on the tiles an opening carried on beyond the window reveals at once, in windows
+     */
+    private static final int MAX_OPENING_WINDOWS = 4;
+
     private Mode mode;
     private Difficulty difficulty;
     private int nBombs;
@@ -27,12 +42,33 @@ public class Manager implements IManager {
     private int bombIncrement;
     private int currentLevel;
 
+    private boolean isNoGuess;
+    private final BoardPool boardPool;
+
+    private boolean isUnbounded;
+    private InfiniteBoard infiniteBoard; // null unless the game is unbounded, in which case the board shows a window of it
+    private int windowTop;
+    private int windowLeft;
+    private byte[] windowTiles;
+
+    private boolean isPreparingNextLevel; // off unless asked for
+    private boolean isNextLevelWanted; // the next level is prepared on the first move of this one
+
     private Board board;
     private Game game;
+    private Journal journal; // null unless the session is journaled
 
     public Manager(Board board, Game game) {
+        this(board, game, null);
+    }
+
+    /**
+     * @param boardPool pool of no-guess layouts, or null for the pool shared by the process
+     */
+    public Manager(Board board, Game game, BoardPool boardPool) {
         this.board = board;
         this.game = game;
+        this.boardPool = boardPool != null ? boardPool : BoardPool.getShared();
         mode = DEFAULT_MODE;
         difficulty = DEFAULT_DIFFICULTY;
         nBombs = setInitialnBombs();
@@ -40,9 +76,53 @@ public class Manager implements IManager {
         bombIncrement = setBombIncrement();
         currentLevel = 1;
         board.initialize(nBombs);
+        game.addListener(new IGameListener() {
+            @Override
+            public void stateChanged(IGame.State previous, IGame.State state) {
+            }
+
+            @Override
+            public void movePlayed(int move) {
+                if (isNextLevelWanted) {
+                    isNextLevelWanted = false;
+                    startPreparingNextLevel();
+                }
+            }
+        });
+        // the changes to the window of an unbounded game are set back on the unbounded board
+        board.addListener(new IBoardListener() {
+            @Override
+            public void tilesRevealed(int[] tiles, int count) {
+                setVisible(tiles, count, true);
+            }
+
+            @Override
+            public void tilesCovered(int[] tiles, int count) {
+                setVisible(tiles, count, false);
+            }
 
+            @Override
+            public void flagToggled(int tile) {
+                if (infiniteBoard == null) return;
+                int i = tile / board.getSizeX();
+                infiniteBoard.setFlag(windowTop + i, windowLeft + tile - i * board.getSizeX(), board.hasFlag(tile));
+            }
+        });
     }
 
+    private void setVisible(int[] tiles, int count, boolean isVisible) {
+        if (infiniteBoard == null) return;
+        int sizeX = board.getSizeX();
+        for (int k = 0; k < count; ++k) {
+            int i = tiles[k] / sizeX;
+            infiniteBoard.setVisible(windowTop + i, windowLeft + tiles[k] - i * sizeX, isVisible);
+        }
+    }
+
+
+    void setJournal(Journal journal) {
+        this.journal = journal;
+    }
 
     private int setInitialnBombs() {
         int nBombs = 0;
@@ -80,40 +160,309 @@ public class Manager implements IManager {
     }
 
     private int setWinLevel() {
-        return mode == Mode.MULTILEVEL ? WIN_LEVEL : 1;
+        return mode == Mode.MULTILEVEL && !isUnbounded ? WIN_LEVEL : 1;
     }
 
     @Override
     public void setNextLevel(){
         nBombs += bombIncrement;
         ++currentLevel;
-        board.initialize(nBombs);
-        game.reset();
+        // the next level's board is usually laid out already, while the player was on this one
+        if (!isNoGuess && board.initializePrepared(nBombs)) {
+            game.reset();
+            prepareNextLevel();
+        }
+        else {
+            cancelNextLevel();
+            startLevel();
+        }
+        // no-guess layouts come from the pool rather than from the seed sequence, so they are not replayed
+        if (journal != null) {
+            if (isNoGuess) {
+                journal.checkpoint();
+            }
+            else {
+                journal.nextLevel();
+            }
+        }
     }
 
     @Override
     public void setNewGame() {
+        cancelNextLevel();
+        resetLevels();
+        startLevel();
+        checkpoint();
+    }
+
+    @Override
+    public void setNewGame(long seed) {
+        cancelNextLevel();
+        resetLevels();
+        if (isUnbounded) {
+            startUnbounded(seed);
+        }
+        else {
+            infiniteBoard = null;
+            board.initialize(nBombs, seed);
+            game.reset();
+        }
+        prepareNextLevel();
+        checkpoint();
+    }
+
+    /**
+     * Lays out the board for the current level and starts the game on it. A no-guess layout is opened at its start tile,
+     * which is where it can be solved from
+     */
+    private void startLevel() {
+        if (isUnbounded) {
+            // the seeds of unbounded games follow from one another, as those of the layouts of a board
+            startUnbounded(SplitMix64.mix64(board.getSeed()));
+            prepareNextLevel();
+            return;
+        }
+        infiniteBoard = null;
+        BoardPool.Layout layout = isNoGuess ? boardPool.take(board.getSizeY(), board.getSizeX(), nBombs) : null;
+        if (layout == null) {
+            board.initialize(nBombs);
+            game.reset();
+        }
+        else {
+            board.initialize(nBombs, layout.seed, layout.startTile);
+            game.reset();
+            game.revealTile(layout.startTile / board.getSizeX(), layout.startTile % board.getSizeX());
+        }
+        prepareNextLevel();
+    }
+
+    /**
+     * Starts an unbounded game, with the window centred on (0, 0), whose neighbours never hold a bomb: the game is
+     * opened there for the player
+     */
+    private void startUnbounded(long seed) {
+        int sizeY = board.getSizeY();
+        int sizeX = board.getSizeX();
+        infiniteBoard = new InfiniteBoard(seed, Math.min((double) nBombs / (sizeY * sizeX), 1));
+        infiniteBoard.setMaxOpening(MAX_OPENING_WINDOWS * sizeY * sizeX);
+        windowTop = -(sizeY / 2);
+        windowLeft = -(sizeX / 2);
+        loadWindow();
+        game.reset();
+        game.revealTile(-windowTop, -windowLeft);
+    }
+
+    /**
+     * Lays the board out as the window of the unbounded board
+     */
+    private void loadWindow() {
+        int nTiles = board.getSizeY() * board.getSizeX();
+        if (windowTiles == null || windowTiles.length < nTiles) {
+            windowTiles = new byte[nTiles];
+        }
+        infiniteBoard.copyWindow(windowTop, windowLeft, board.getSizeY(), board.getSizeX(), windowTiles);
+        board.initializeWindow(windowTiles, infiniteBoard.getSeed());
+    }
+
+    @Override
+    public void scroll(int di, int dj) {
+        if (infiniteBoard == null) return;
+        windowTop += di;
+        windowLeft += dj;
+        infiniteBoard.openWindow(windowTop, windowLeft, board.getSizeY(), board.getSizeX());
+        loadWindow();
+        if (journal != null) {
+            journal.scroll(di, dj);
+        }
+    }
+
+    @Override
+    public boolean canScroll() {
+        return infiniteBoard != null;
+    }
+
+    /**
+     * Has the next level's board laid out in the background once this level is played, if levels are prepared at all.
+     * Boards left before their first move, as when a game is loaded or started again, never take a thread
+     */
+    private void prepareNextLevel() {
+        isNextLevelWanted = isPreparingNextLevel && currentLevel != winLevel;
+        if (isNextLevelWanted && !game.isFirstMove()) {
+            isNextLevelWanted = false;
+            startPreparingNextLevel();
+        }
+    }
+
+    private void startPreparingNextLevel() {
+        if (isNoGuess) {
+            boardPool.prepare(board.getSizeY(), board.getSizeX(), nBombs + bombIncrement);
+        }
+        else {
+            board.prepare(nBombs + bombIncrement, ForkJoinPool.commonPool());
+        }
+    }
+
+    private void cancelNextLevel() {
+        isNextLevelWanted = false;
+        board.cancelPrepared();
+    }
+
+    @Override
+    public void setPreparingNextLevel(boolean isPreparingNextLevel) {
+        this.isPreparingNextLevel = isPreparingNextLevel;
+        if (isPreparingNextLevel) {
+            prepareNextLevel();
+        }
+        else {
+            cancelNextLevel();
+        }
+    }
+
+    /**
+     * @return the number of bytes write() takes
+     */
+    long getSavedSize() {
+        long windowSize = infiniteBoard != null ? SAVED_WINDOW_SIZE + infiniteBoard.getSavedSize() : 0;
+        return SAVED_FIELDS_SIZE + windowSize + Board.getSavedSize(board.getSizeY(), board.getSizeX());
+    }
+
+    /**
+     * Writes the session at the position of the buffer: the levels and settings, the state of the game, the window and
+     * the unbounded board of an unbounded game, then the board
+     */
+    void write(ByteBuffer buffer) {
+        buffer.put((byte) mode.ordinal()).put((byte) difficulty.ordinal()).put((byte) (isNoGuess ? 1 : 0))
+                .put((byte) (isUnbounded ? 1 : 0)).putInt(nBombs).putInt(winLevel).putInt(bombIncrement)
+                .putInt(currentLevel).put((byte) game.getState().ordinal()).put((byte) (game.isFirstMove() ? 1 : 0))
+                .put((byte) (infiniteBoard != null ? 1 : 0));
+        if (infiniteBoard != null) {
+            buffer.putInt(windowTop).putInt(windowLeft);
+            infiniteBoard.write(buffer);
+        }
+        board.write(buffer);
+    }
+
+    /**
+     * Reads a session written by write(), from the position of the buffer to its limit
+     * @return false, leaving the session unchanged, if the data does not hold a valid session
+     */
+    boolean read(ByteBuffer buffer) {
+        if (buffer.remaining() < SAVED_FIELDS_SIZE) return false;
+        int savedMode = buffer.get();
+        int savedDifficulty = buffer.get();
+        boolean savedIsNoGuess = buffer.get() != 0;
+        boolean savedIsUnbounded = buffer.get() != 0;
+        int savedBombs = buffer.getInt();
+        int savedWinLevel = buffer.getInt();
+        int savedBombIncrement = buffer.getInt();
+        int savedLevel = buffer.getInt();
+        int savedState = buffer.get();
+        boolean savedIsFirstMove = buffer.get() != 0;
+        boolean hasWindow = buffer.get() != 0;
+        if (savedMode < 0 || savedMode >= Mode.values().length
+                || savedDifficulty < 0 || savedDifficulty >= Difficulty.values().length
+                || savedState < 0 || savedState >= IGame.State.values().length
+                || savedBombs < 0 || savedWinLevel < 1 || savedLevel < 1 || savedLevel > savedWinLevel
+                || savedBombIncrement < 0) {
+            return false;
+        }
+        int savedWindowTop = 0;
+        int savedWindowLeft = 0;
+        InfiniteBoard savedInfiniteBoard = null;
+        if (hasWindow) {
+            if (buffer.remaining() < SAVED_WINDOW_SIZE) return false;
+            savedWindowTop = buffer.getInt();
+            savedWindowLeft = buffer.getInt();
+            savedInfiniteBoard = InfiniteBoard.read(buffer);
+            if (savedInfiniteBoard == null) return false;
+        }
+        if (!board.read(buffer)) return false;
+
+        mode = Mode.values()[savedMode];
+        difficulty = Difficulty.values()[savedDifficulty];
+        isNoGuess = savedIsNoGuess;
+        isUnbounded = savedIsUnbounded;
+        infiniteBoard = savedInfiniteBoard;
+        windowTop = savedWindowTop;
+        windowLeft = savedWindowLeft;
+        if (infiniteBoard != null) {
+            // the board counted the close bombs of the edge tiles within the window only
+            loadWindow();
+        }
+        nBombs = savedBombs;
+        winLevel = savedWinLevel;
+        bombIncrement = savedBombIncrement;
+        currentLevel = savedLevel;
+        game.restore(IGame.State.values()[savedState], savedIsFirstMove);
+        prepareNextLevel();
+        return true;
+    }
+
+    /**
+     * Gets layouts ready for the next new game
+     */
+    private void prepareNewGame() {
+        if (isNoGuess) {
+            boardPool.prepare(board.getSizeY(), board.getSizeX(), setInitialnBombs());
+        }
+    }
+
+    private void checkpoint() {
+        if (journal != null) {
+            journal.checkpoint();
+        }
+    }
+
+    private void resetLevels() {
         nBombs = setInitialnBombs();
         bombIncrement = setBombIncrement();
         winLevel = setWinLevel();
         currentLevel = 1;
-        board.initialize(nBombs);
-        game.reset();
     }
 
     @Override
     public void toggleFlagMode() {
         game.setState( game.getState() == Game.State.PLACING_FLAGS ? Game.State.PLAYING : Game.State.PLACING_FLAGS);
+        if (journal != null) {
+            journal.toggleFlagMode();
+        }
     }
 
     @Override
     public void setMode(Mode mode) {
         this.mode = mode;
+        prepareNewGame();
+        checkpoint();
     }
 
     @Override
     public void setDifficulty(Difficulty difficulty) {
         this.difficulty = difficulty;
+        prepareNewGame();
+        checkpoint();
+    }
+
+    @Override
+    public void setNoGuess(boolean isNoGuess) {
+        this.isNoGuess = isNoGuess;
+        prepareNewGame();
+        checkpoint();
+    }
+
+    @Override
+    public boolean isNoGuess() {
+        return isNoGuess;
+    }
+
+    @Override
+    public void setUnbounded(boolean isUnbounded) {
+        this.isUnbounded = isUnbounded;
+        checkpoint();
+    }
+
+    @Override
+    public boolean isUnbounded() {
+        return isUnbounded;
     }
 
     @Override
@@ -123,6 +472,16 @@ public class Manager implements IManager {
         setNewGame();
     }
 
+    @Override
+    public Mode getMode() {
+        return mode;
+    }
+
+    @Override
+    public Difficulty getDifficulty() {
+        return difficulty;
+    }
+
     @Override
     public int getCurrentLevel() {
         return currentLevel;
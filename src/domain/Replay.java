@@ -0,0 +1,216 @@
+package domain;
+
+import interfaces.IBoard;
+import interfaces.IGame;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Recording of one game, as made by ReplayRecorder: the layout it was played on, given by its seed, its timed moves
+ * and how it ended. The layout is laid out again from the seed, so a replay takes a few bytes per move whatever the board size.
+ * Replay files start with a magic number and a format version, then hold any number of replays one after the other.
+ * Sizes, tiles and times are written as variable-length integers, 7 bits per byte.
+ */
+public final class Replay {
+
+    private static final int MAGIC = 0x4D535250; // "MSRP"
+    private static final int VERSION = 1;
+
+    private final int sizeY;
+    private final int sizeX;
+    private final int nBombs;
+    private final IBoard.FirstMove firstMove;
+    private final long seed;
+    private final int startTile; // tile the layout was made around before the first move, or -1
+    private final int[] moves; // packed as by IGame.move()
+    private final int[] times; // milliseconds from the start of the game to each move
+    private final IGame.State result; // PLAYING for a game left unfinished
+    private final int duration; // milliseconds, which the time of the last move must match
+    private final int nTilesToUncover;
+    private final long revealHash; // sum of a hash of every tile revealed, less those covered again
+
+    Replay(int sizeY, int sizeX, int nBombs, IBoard.FirstMove firstMove, long seed, int startTile, int[] moves,
+           int[] times, IGame.State result, int duration, int nTilesToUncover, long revealHash) {
+        this.sizeY = sizeY;
+        this.sizeX = sizeX;
+        this.nBombs = nBombs;
+        this.firstMove = firstMove;
+        this.seed = seed;
+        this.startTile = startTile;
+        this.moves = moves;
+        this.times = times;
+        this.result = result;
+        this.duration = duration;
+        this.nTilesToUncover = nTilesToUncover;
+        this.revealHash = revealHash;
+    }
+
+    public static void writeFileHeader(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    /**
+     * @return false if the buffer does not start with the header of a replay file of this version
+     */
+    public static boolean readFileHeader(ByteBuffer in) {
+        return in.remaining() >= 2 * Integer.BYTES && in.getInt() == MAGIC && in.getInt() == VERSION;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        writeVarInt(out, sizeY);
+        writeVarInt(out, sizeX);
+        writeVarInt(out, nBombs);
+        out.writeByte(firstMove.ordinal());
+        out.writeLong(seed);
+        writeVarInt(out, startTile + 1);
+        out.writeByte(result.ordinal());
+        writeVarInt(out, duration);
+        writeVarInt(out, nTilesToUncover);
+        out.writeLong(revealHash);
+        writeVarInt(out, moves.length);
+        int previousTime = 0;
+        for (int k = 0; k < moves.length; ++k) {
+            writeVarInt(out, moves[k]);
+            // times only grow, so their differences are small and positive
+            writeVarInt(out, times[k] - previousTime);
+            previousTime = times[k];
+        }
+    }
+
+    /**
+     * Reads the next replay of the buffer. Only the encoding is checked: ReplayVerifier checks the replay itself.
+     * @throws IllegalArgumentException if the buffer does not hold a replay, such as at the end of a file cut short
+     */
+    public static Replay read(ByteBuffer in) {
+        if (!in.hasRemaining()) throw new IllegalArgumentException("no replay");
+        int sizeY = readVarInt(in);
+        int sizeX = readVarInt(in);
+        int nBombs = readVarInt(in);
+        IBoard.FirstMove firstMove = readEnum(IBoard.FirstMove.values(), readByte(in));
+        long seed = readLong(in);
+        int startTile = readVarInt(in) - 1;
+        IGame.State result = readEnum(IGame.State.values(), readByte(in));
+        int duration = readVarInt(in);
+        int nTilesToUncover = readVarInt(in);
+        long revealHash = readLong(in);
+        int nMoves = readVarInt(in);
+        // every move takes two bytes at least
+        if (nMoves > in.remaining() / 2) throw new IllegalArgumentException("replay cut short");
+        int[] moves = new int[nMoves];
+        int[] times = new int[nMoves];
+        int time = 0;
+        for (int k = 0; k < nMoves; ++k) {
+            moves[k] = readVarInt(in);
+            time += readVarInt(in);
+            times[k] = time;
+        }
+        return new Replay(sizeY, sizeX, nBombs, firstMove, seed, startTile, moves, times, result, duration,
+                nTilesToUncover, revealHash);
+    }
+
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Reads a variable length integer. Every one of them is a size, a count, a tile, a move or a time, none negative
+     */
+    private static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte(in);
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) throw new IllegalArgumentException("negative value: " + value);
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("integer too long");
+    }
+
+    private static int readByte(ByteBuffer in) {
+        if (!in.hasRemaining()) throw new IllegalArgumentException("replay cut short");
+        return in.get() & 0xFF;
+    }
+
+    private static long readLong(ByteBuffer in) {
+        if (in.remaining() < Long.BYTES) throw new IllegalArgumentException("replay cut short");
+        return in.getLong();
+    }
+
+    private static <E> E readEnum(E[] values, int ordinal) {
+        if (ordinal >= values.length) throw new IllegalArgumentException("unknown value: " + ordinal);
+        return values[ordinal];
+    }
+
+    public int getSizeY() {
+        return sizeY;
+    }
+
+    public int getSizeX() {
+        return sizeX;
+    }
+
+    public int getnBombs() {
+        return nBombs;
+    }
+
+    public IBoard.FirstMove getFirstMove() {
+        return firstMove;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    int getStartTile() {
+        return startTile;
+    }
+
+    public int getnMoves() {
+        return moves.length;
+    }
+
+    /**
+     * @return the k-th move, packed as by IGame.move()
+     */
+    public int getMove(int k) {
+        return moves[k];
+    }
+
+    /**
+     * @return the time of the k-th move, in milliseconds from the start of the game
+     */
+    public int getTime(int k) {
+        return times[k];
+    }
+
+    /**
+     * @return the time the game took, in milliseconds, as recorded
+     */
+    public int getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return WON or LOST, or PLAYING for a game left unfinished
+     */
+    public IGame.State getResult() {
+        return result;
+    }
+
+    public int getnTilesToUncover() {
+        return nTilesToUncover;
+    }
+
+    long getRevealHash() {
+        return revealHash;
+    }
+}
@@ -0,0 +1,134 @@
+package domain;
+
+import interfaces.IBoard;
+import interfaces.IBoardListener;
+import interfaces.IGame;
+import interfaces.IGameListener;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Records the games played on a board as replays, one per game or level, from the next game started.
+ * It follows the board and the game through their listeners, and hands each replay over once the next game starts or
+ * finish() is called. A game put back from a save is not recorded, since its first moves are not known.
+ * Recording a move costs a few array writes.
+ */
+public class ReplayRecorder implements IGameListener, IBoardListener {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final IBoard board;
+    private final IGame game;
+    private final Consumer<Replay> sink;
+
+    private boolean isRecording;
+    private int sizeY;
+    private int sizeX;
+    private int nBombs;
+    private IBoard.FirstMove firstMove;
+    private long seed;
+    private int startTile;
+    private long startTime;
+    private int[] moves = new int[INITIAL_CAPACITY];
+    private int[] times = new int[INITIAL_CAPACITY];
+    private int nMoves;
+    private long revealHash;
+    // as the last move left the game: the next game is laid out before it starts
+    private IGame.State result;
+    private int nTilesToUncover;
+
+    /**
+     * @param sink receives the replays, on the thread playing
+     */
+    public ReplayRecorder(IBoard board, IGame game, Consumer<Replay> sink) {
+        this.board = board;
+        this.game = game;
+        this.sink = sink;
+        board.addListener(this);
+        game.addListener(this);
+    }
+
+    /**
+     * Stops following the board and the game, without handing over the game being recorded
+     */
+    public void detach() {
+        board.removeListener(this);
+        game.removeListener(this);
+        isRecording = false;
+    }
+
+    /**
+     * Hands over the game being recorded, as it stands, unless no move was made in it. Recording resumes with the next game.
+     */
+    public void finish() {
+        if (!isRecording) return;
+        isRecording = false;
+        if (nMoves == 0) return;
+
+        sink.accept(new Replay(sizeY, sizeX, nBombs, firstMove, seed, startTile, Arrays.copyOf(moves, nMoves),
+                Arrays.copyOf(times, nMoves), result, times[nMoves - 1], nTilesToUncover, revealHash));
+    }
+
+    @Override
+    public void gameStarted() {
+        finish();
+        isRecording = true;
+        sizeY = board.getSizeY();
+        sizeX = board.getSizeX();
+        nBombs = board.getnBombs();
+        firstMove = board.getFirstMove();
+        seed = board.getSeed();
+        // a layout made around a start tile keeps it clear from the start
+        startTile = board.getSafeTile();
+        startTime = System.nanoTime();
+        nMoves = 0;
+        revealHash = 0;
+    }
+
+    @Override
+    public void gameRestored() {
+        isRecording = false;
+    }
+
+    @Override
+    public void movePlayed(int move) {
+        if (!isRecording) return;
+        if (nMoves == moves.length) {
+            moves = Arrays.copyOf(moves, 2 * nMoves);
+            times = Arrays.copyOf(times, 2 * nMoves);
+        }
+        moves[nMoves] = move;
+        times[nMoves++] = (int) ((System.nanoTime() - startTime) / 1_000_000);
+        IGame.State state = game.getState();
+        result = state == IGame.State.WON || state == IGame.State.LOST ? state : IGame.State.PLAYING;
+        nTilesToUncover = board.nTilesToUncover();
+    }
+
+    @Override
+    public void stateChanged(IGame.State previous, IGame.State state) {
+    }
+
+    @Override
+    public void tilesRevealed(int[] tiles, int count) {
+        if (!isRecording) return;
+        revealHash += hashTiles(tiles, count);
+    }
+
+    @Override
+    public void tilesCovered(int[] tiles, int count) {
+        if (!isRecording) return;
+        revealHash -= hashTiles(tiles, count);
+    }
+
+    /**
+     * @return a hash of the tiles that does not depend on their order, so that any order of reveal gives the same hash
+     */
+    private static long hashTiles(int[] tiles, int count) {
+        long hash = 0;
+        for (int k = 0; k < count; ++k) {
+            hash += SplitMix64.mix64(tiles[k]);
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,85 @@
+package domain;
+
+import interfaces.IBoard;
+import interfaces.IGame;
+
+/**
+ * Plays replays again on a board and game of its own, headless, and checks that they end as recorded.
+ * A verifier reuses its board from one replay to the next, so it only allocates when a replay needs a larger board.
+ * It is meant to be used by one thread: verifying on several threads takes one verifier per thread.
+ */
+public class ReplayVerifier {
+
+    // the largest custom board side, and a cap on tiles well below the largest custom board, since a replay is untrusted
+    // input and every verifier thread holds a board of the size of the largest replay it verified
+    private static final int MAX_SIZE = 5000;
+    private static final int MAX_TILES = 1 << 20;
+    // more bombs than any setting lays out: a RETRY first move is retried until it is safe, so crowded boards could
+    // take forever
+    private static final int MAX_BOMBS_SHIFT = 1; // half the tiles
+
+    public enum Verdict {
+        VALID,
+        MALFORMED,     // sizes, bombs or tiles out of range
+        WRONG_TIME,    // the recorded time does not match the times of the moves
+        WRONG_RESULT,  // the game does not end as recorded, or ends before its last move
+        WRONG_BOARD    // the game ends as recorded, but not with the same tiles revealed
+    }
+
+    private final Board board = new Board(1, 1);
+    private final Game game = new Game(board);
+    private final ReplayRecorder recorder = new ReplayRecorder(board, game, replay -> replayed = replay);
+    private Replay replayed;
+    private int[] moves = new int[0];
+
+    public Verdict verify(Replay replay) {
+        int sizeY = replay.getSizeY();
+        int sizeX = replay.getSizeX();
+        if (sizeY < 1 || sizeX < 1 || sizeY > MAX_SIZE || sizeX > MAX_SIZE || sizeY * sizeX > MAX_TILES) {
+            return Verdict.MALFORMED;
+        }
+        int nTiles = sizeY * sizeX;
+        if (replay.getnBombs() < 0 || replay.getnBombs() > nTiles >> MAX_BOMBS_SHIFT
+                || replay.getStartTile() < -1 || replay.getStartTile() >= nTiles || replay.getnMoves() == 0) {
+            return Verdict.MALFORMED;
+        }
+        int nMoves = replay.getnMoves();
+        if (moves.length < nMoves) {
+            moves = new int[Math.max(nMoves, 2 * moves.length)];
+        }
+        int time = 0;
+        for (int k = 0; k < nMoves; ++k) {
+            int move = replay.getMove(k);
+            int type = move & (1 << IGame.MOVE_TYPE_BITS) - 1;
+            if (move < 0 || type > IGame.REDO || (move >>> IGame.MOVE_TYPE_BITS) >= nTiles) return Verdict.MALFORMED;
+            if (replay.getTime(k) < time) return Verdict.WRONG_TIME;
+            time = replay.getTime(k);
+            moves[k] = move;
+        }
+        if (replay.getDuration() != time) return Verdict.WRONG_TIME;
+
+        board.setGrid(sizeY, sizeX);
+        board.setFirstMove(replay.getFirstMove());
+        if (replay.getStartTile() >= 0) {
+            board.initialize(replay.getnBombs(), replay.getSeed(), replay.getStartTile());
+        }
+        else {
+            board.initialize(replay.getnBombs(), replay.getSeed());
+        }
+        replayed = null;
+        game.reset();
+        // moves made once the game is over, other than undo and redo, could not have been played
+        int nMovesPlayed = game.play(moves, nMoves).getnMovesPlayed();
+        recorder.finish();
+
+        // a replay of moves that changed nothing, such as undos with nothing to undo, records nothing
+        if (replayed == null || nMovesPlayed < nMoves || replayed.getResult() != replay.getResult()) {
+            return Verdict.WRONG_RESULT;
+        }
+        if (replayed.getnTilesToUncover() != replay.getnTilesToUncover()
+                || replayed.getRevealHash() != replay.getRevealHash()) {
+            return Verdict.WRONG_BOARD;
+        }
+        return Verdict.VALID;
+    }
+}
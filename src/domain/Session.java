@@ -0,0 +1,103 @@
+package domain;
+
+import interfaces.IBoard;
+import interfaces.IGame;
+import interfaces.IManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Holds the board, game and manager of one game session.
+ * Sessions share no state, so any number of them can be played side by side, each one from a single thread.
+ */
+public class Session {
+
+    private final Board board;
+    private final Game game;
+    private final Manager manager;
+    private Journal journal; // null unless the session is journaled
+
+    public Session() {
+        this(Manager.DEFAULT_GRID_SIZE_Y, Manager.DEFAULT_GRID_SIZE_X);
+    }
+
+    /**
+     * @param sizeY number of rows
+     * @param sizeX number of columns
+     */
+    public Session(int sizeY, int sizeX) {
+        this(sizeY, sizeX, null);
+    }
+
+    /**
+     * @param boardPool pool of no-guess layouts, or null for the pool shared by the process
+     */
+    public Session(int sizeY, int sizeX, BoardPool boardPool) {
+        board = new Board(sizeY, sizeX);
+        game = new Game(board);
+        manager = new Manager(board, game, boardPool);
+    }
+
+    public IBoard getBoard() {
+        return board;
+    }
+
+    public IGame getGame() {
+        return game;
+    }
+
+    public IManager getManager() {
+        return manager;
+    }
+
+    /**
+     * Saves the board, the game and the levels and settings of the session. The undo history is not saved
+     */
+    public void save(Path file) throws IOException {
+        SessionFile.save(manager, file);
+    }
+
+    /**
+     * Puts the session back as it was saved
+     * @return false, leaving the session unchanged, if the file does not hold a saved session
+     */
+    public boolean load(Path file) throws IOException {
+        boolean isLoaded = SessionFile.load(manager, file);
+        if (isLoaded && journal != null) {
+            journal.checkpoint();
+        }
+        return isLoaded;
+    }
+
+    /**
+     * Takes the session up again from a journal left by a crash or a previous session, if the file holds one,
+     * then journals every change to the session in the file until closeJournal()
+     * @return whether the session was recovered from the journal
+     */
+    public boolean openJournal(Path file) throws IOException {
+        closeJournal();
+        boolean isRecovered = Files.exists(file) && Journal.recover(file, manager, game, board);
+        journal = new Journal(file, manager, game, board);
+        return isRecovered;
+    }
+
+    /**
+     * @return the error of the last journal write, or null if it succeeded or the session is not journaled.
+     * The journal is written again whole with the next changes after an error
+     */
+    public IOException getJournalFailure() {
+        return journal != null ? journal.getFailure() : null;
+    }
+
+    /**
+     * Stops journaling the session, once the changes already made are written
+     */
+    public void closeJournal() throws IOException {
+        if (journal == null) return;
+        Journal closing = journal;
+        journal = null;
+        closing.close();
+    }
+}
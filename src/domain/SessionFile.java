@@ -0,0 +1,73 @@
+package domain;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary save file of a session, written and read whole through a buffer.
+ * The file is not mapped: a mapping stays until the buffer is collected, and keeps the file from being replaced on some
+ * systems meanwhile.
+ * It starts with a magic number and a format version, followed by the session as written by Manager.write().
+ * The board takes 3 bits per tile, so a 2000 x 2000 board saves to 1.5 MB.
+ */
+final class SessionFile {
+
+    private static final int MAGIC = 0x4D535750; // "MSWP"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+    private SessionFile() {
+    }
+
+    /**
+     * Writes the session to a temporary file next to the file, then moves it over the file,
+     * so that a failed save leaves the last save whole
+     */
+    static void save(Manager manager, Path file) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate((int) (HEADER_SIZE + manager.getSavedSize()));
+            buffer.putInt(MAGIC).putInt(VERSION);
+            manager.write(buffer);
+            buffer.flip();
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+            try {
+                Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * @return false, leaving the session unchanged, if the file does not hold a session of this version
+     */
+    static boolean load(Manager manager, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) return false;
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // reads until the buffer is full, or until the end of a file cut short meanwhile
+            }
+            buffer.flip();
+            return buffer.getInt() == MAGIC && buffer.getInt() == VERSION && manager.read(buffer);
+        }
+    }
+}
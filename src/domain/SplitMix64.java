@@ -0,0 +1,70 @@
+package domain;
+
+/**
+ * SplitMix64 generator: fast, splittable, and fully specified here, so that a seed gives the same numbers
+ * on every JVM and machine. java.util.Random and SplittableRandom leave their bounded draws free to change between releases.
+ */
+final class SplitMix64 {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long state;
+
+    SplitMix64(long seed) {
+        state = seed;
+    }
+
+    void setSeed(long seed) {
+        state = seed;
+    }
+
+    /**
+     * @return the state of the generator, which setSeed() restores
+     */
+    long getSeed() {
+        return state;
+    }
+
+    long nextLong() {
+        return mix64(state += GOLDEN_GAMMA);
+    }
+
+    /**
+     * @return the first value of a generator seeded with seed, as new SplitMix64(seed).nextLong() would give it
+     */
+    static long first(long seed) {
+        return mix64(seed + GOLDEN_GAMMA);
+    }
+
+    /**
+     * @return a uniform value from 0 to bound - 1, using Lemire's multiply-shift method with unbiased rejection
+     */
+    int nextInt(int bound) {
+        long m = (nextLong() >>> 32) * bound;
+        int low = (int) m;
+        if (Integer.compareUnsigned(low, bound) < 0) {
+            int threshold = Integer.remainderUnsigned(-bound, bound);
+            while (Integer.compareUnsigned(low, threshold) < 0) {
+                m = (nextLong() >>> 32) * bound;
+                low = (int) m;
+            }
+        }
+        return (int) (m >>> 32);
+    }
+
+    /**
+     * @return an independent generator, seeded from this one
+     */
+    SplitMix64 split() {
+        return new SplitMix64(nextLong());
+    }
+
+    /**
+     * SplitMix64 finalizer: spreads every input bit over the whole output.
+     */
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -8,12 +8,81 @@ public interface IBoard {
         CONTINUE
     }
 
+    /**
+     * How the first reveal of a game is kept clear of bombs
+     */
+    enum FirstMove {
+        RETRY,          // the board is laid out up front and laid out again until the first revealed tile is safe
+        SAFE_TILE,      // the board is laid out on the first reveal, leaving out the revealed tile
+        SAFE_OPENING    // the board is laid out on the first reveal, leaving out the revealed tile and its neighbours
+    }
+
+    /**
+     * Starts a new layout, with the next seed of the board's seed sequence
+     */
     void initialize(int nBombs);
+
+    /**
+     * Starts a new layout from the given seed, and restarts the board's seed sequence from it.
+     * The layout only depends on the seed, the size of the grid, the number of bombs, the first-move policy
+     * and, unless the policy is RETRY, the first revealed tile.
+     */
+    void initialize(int nBombs, long seed);
     void reinitialize();
     RevealResult revealTile(int i, int j);
+
+    /**
+     * Chords a visible number: when as many of its neighbours are flagged as it has close bombs, reveals all of its other
+     * covered neighbours at once, openings included. Does nothing otherwise.
+     * The revealed tiles are reported as a single change, as for a reveal. Wrong flags make it a LOSS.
+     */
+    RevealResult chord(int i, int j);
+
+    /**
+     * @return a view of the tile, made for the call: loops over many tiles read them by index instead
+     */
     ICell getCell(int i, int j);
+
+    // the tile at a packed index (i * sizeX + j), read or changed as through getCell() without a view of it
+    boolean isVisible(int tile);
+    boolean isBomb(int tile);
+    boolean hasFlag(int tile);
+    int getnCloseBombs(int tile);
+    void toggleFlag(int tile);
+
+    /**
+     * @return the number of tiles changed by the last reveal, flag toggle, undo or redo
+     */
+    int getnChangedTiles();
+
+    /**
+     * @return the packed index (i * sizeX + j) of the k-th tile changed by the last reveal, flag toggle, undo or redo
+     */
+    int getChangedTile(int k);
+
+    void addListener(IBoardListener listener);
+    void removeListener(IBoardListener listener);
+
     int nTilesToUncover();
     int getSizeX();
     int getSizeY();
     void setGrid(int sizeX, int sizeY);
+    void setFirstMove(FirstMove firstMove);
+    FirstMove getFirstMove();
+    boolean isLaidOut();
+
+    long getSeed();
+    int getnBombs();
+
+    /**
+     * @return the packed index of the tile the layout keeps clear, or -1 if none: it is set by the first reveal of a lazy
+     * layout, or before the first move for a layout made around a start tile, such as a no-guess layout
+     */
+    int getSafeTile();
+
+    /**
+     * @return sizeXxsizeY-nBombs-seed, followed once the bombs are placed by -safeTile-layoutHash, where safeTile is
+     * the packed index of the tile kept clear (-1 for none) and layoutHash is a hash of the bomb bitset. Seeds and hashes are in hexadecimal
+     */
+    String getFingerprint();
 }
@@ -0,0 +1,34 @@
+package interfaces;
+
+/**
+ * Receives the changes made to a board, one call per operation. Every method does nothing by default.
+ * Listeners are called on the thread that changes the board, after the change is complete.
+ */
+public interface IBoardListener {
+
+    /**
+     * @param tiles packed indexes (i * sizeX + j) of the revealed tiles, in tiles[0] to tiles[count - 1].
+     *              The array belongs to the board and is only valid during the call.
+     */
+    default void tilesRevealed(int[] tiles, int count) {
+    }
+
+    /**
+     * The tiles were covered again, when a move was undone
+     * @param tiles packed indexes of the covered tiles, as for tilesRevealed()
+     */
+    default void tilesCovered(int[] tiles, int count) {
+    }
+
+    /**
+     * @param tile packed index (i * sizeX + j) of the tile
+     */
+    default void flagToggled(int tile) {
+    }
+
+    /**
+     * The board was cleared for a new layout, possibly with a new size: any tile may have changed.
+     */
+    default void boardRegenerated() {
+    }
+}
@@ -9,7 +9,101 @@ public interface IGame {
         PLACING_FLAGS
     }
 
+    // move types of a batch, see play(), and of IGameListener.movePlayed()
+    int REVEAL = 0;
+    int FLAG = 1; // toggles the flag of a covered tile
+    int CHORD = 2;
+    int UNDO = 3; // the tile of an undo or a redo is 0
+    int REDO = 4;
+    int MOVE_TYPE_BITS = 3;
+
+    /**
+     * @param tile packed index (i * sizeX + j) of the tile
+     * @return the move of the given type on the tile, packed for play()
+     */
+    static int move(int tile, int type) {
+        return tile << MOVE_TYPE_BITS | type;
+    }
+
+    /**
+     * Totals of a batch of moves
+     */
+    final class BatchResult {
+        private final int nMovesPlayed;
+        private final int nTilesOpened;
+        private final State state;
+        private final int losingMove;
+
+        public BatchResult(int nMovesPlayed, int nTilesOpened, State state, int losingMove) {
+            this.nMovesPlayed = nMovesPlayed;
+            this.nTilesOpened = nTilesOpened;
+            this.state = state;
+            this.losingMove = losingMove;
+        }
+
+        /**
+         * @return the number of moves played, which is less than the batch when the game ended before its last moves
+         */
+        public int getnMovesPlayed() {
+            return nMovesPlayed;
+        }
+
+        /**
+         * @return the number of safe tiles revealed by the batch, less those its undos covered again
+         */
+        public int getnTilesOpened() {
+            return nTilesOpened;
+        }
+
+        /**
+         * @return the state of the game after the batch
+         */
+        public State getState() {
+            return state;
+        }
+
+        /**
+         * @return the index in the batch of the move that lost the game, or -1 if none did or if it was taken back
+         */
+        public int getLosingMove() {
+            return losingMove;
+        }
+    }
+
     void revealTile(int i, int j);
+
+    /**
+     * Chords the tile, see IBoard.chord(), and updates the state of the game from the result
+     */
+    void chord(int i, int j);
+    /**
+     * Plays moves[0] to moves[count - 1] in order, each one as revealTile(), ICell.toggleFlag(), chord(), undo() or
+     * redo() would, and stops at the first move, other than an undo or a redo, made once the game is over. A batch can
+     * so take back the move that lost it, and go on.
+     * @param moves packed as by move()
+     */
+    BatchResult play(int[] moves, int count);
+
+    /**
+     * Takes back the last move: a reveal, a chord or a flag toggle, even one that ended the game.
+     * Moves can be undone back to the start of the layout, which is kept: undoing the first move does not make
+     * the next first move safe again.
+     * @return whether there was a move to undo
+     */
+    boolean undo();
+
+    /**
+     * Plays the last undone move again, as long as no other move was made since
+     * @return whether there was a move to redo
+     */
+    boolean redo();
+
+    boolean canUndo();
+    boolean canRedo();
+
     State getState();
+    boolean isFirstMove();
     void setState(State state);
+    void addListener(IGameListener listener);
+    void removeListener(IGameListener listener);
 }
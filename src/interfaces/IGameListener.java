@@ -0,0 +1,28 @@
+package interfaces;
+
+/**
+ * Receives the state transitions and the moves of a game.
+ */
+public interface IGameListener {
+
+    void stateChanged(IGame.State previous, IGame.State state);
+
+    /**
+     * A game started on a new layout, before its first move
+     */
+    default void gameStarted() {
+    }
+
+    /**
+     * A game was put back as saved, with the moves it had then
+     */
+    default void gameRestored() {
+    }
+
+    /**
+     * A move was played: a reveal, a chord, a flag toggle, an undo or a redo, packed as by IGame.move().
+     * The flag toggles of an undo or a redo are part of it, and are not reported as moves of their own.
+     */
+    default void movePlayed(int move) {
+    }
+}
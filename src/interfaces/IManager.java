@@ -14,9 +14,48 @@ public interface IManager {
 
     void setNextLevel();
     void setNewGame();
+
+    /**
+     * Starts a new game whose boards, including the next levels, are all reproducible from the seed
+     */
+    void setNewGame(long seed);
     void toggleFlagMode();
     void setMode(Mode mode);
     void setDifficulty(Difficulty difficulty);
+    Mode getMode();
+    Difficulty getDifficulty();
+
+    /**
+     * Sets whether the next games are laid out so that they can be cleared without guessing, from a start tile opened
+     * for the player. Boards too large or too crowded for such layouts fall back on random layouts
+     */
+    void setNoGuess(boolean isNoGuess);
+    boolean isNoGuess();
+
+    /**
+     * Sets whether the next games are played on an unbounded board, of which the board shows a window that scroll()
+     * moves. Their bombs are spread as those of a board of the window's size, and they are never won
+     */
+    void setUnbounded(boolean isUnbounded);
+    boolean isUnbounded();
+
+    /**
+     * Moves the window of an unbounded game by di rows and dj columns. The openings that reached the tiles it now
+     * shows are carried on across them, and the undo history is cleared. Does nothing for other games
+     */
+    void scroll(int di, int dj);
+
+    /**
+     * @return whether the game is played on an unbounded board, see scroll()
+     */
+    boolean canScroll();
+
+    /**
+     * Sets whether the next level's board is laid out on a background thread while a level is played, so that it is
+     * ready when the level is won. Off by default
+     */
+    void setPreparingNextLevel(boolean isPreparingNextLevel);
+
     void setBoardSizeAndRestart(int x, int y);
 
     int getCurrentLevel();
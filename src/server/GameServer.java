@@ -0,0 +1,509 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import domain.BoardPool;
+import interfaces.IGame;
+import interfaces.IManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless server hosting many independent sessions, each with its own board, game and manager, over HTTP on localhost.
+ * Requests are handled on virtual threads, one per request, when the runtime has them (Java 21), and on a fixed pool
+ * of platform threads otherwise. Requests on different sessions never wait for each other; those on the same session
+ * are played one at a time. Moves are sent in batches, as for IGame.play(), and the response only carries the tiles
+ * they changed. Sessions left idle for IDLE_TIMEOUT_MINUTES are dropped.
+ * Memory is bounded by the number of sessions, the tiles of each board and the tiles of all boards together, about 25
+ * bytes per tile: a session is only created once its slot and its tiles are reserved, and they are given back when it
+ * is dropped.
+ *
+ * Protocol, all responses in JSON:
+ *   POST   /sessions?rows=15&amp;cols=25&amp;mode=multilevel&amp;difficulty=medium&amp;noguess=false&amp;seed=1
+ *                                  creates a session, every parameter optional, and returns its view
+ *   GET    /sessions/{id}          view of the session: settings, state, level and grid
+ *   POST   /sessions/{id}/moves    plays the moves of the body, packed as by IGame.move() and separated by commas,
+ *                                  and returns the batch result with the changed tiles, or the grid if it was laid out anew
+ *   POST   /sessions/{id}/new?seed=1  starts a new game, seed optional, and returns the view
+ *   POST   /sessions/{id}/next     goes on to the next level once the current one is won, and returns the view
+ *   DELETE /sessions/{id}          drops the session
+ * In a grid, and in the values of the changed tiles, '.' is a covered tile, 'F' a flag, '*' a bomb and '0' to '8' a
+ * revealed number. Once a game is over, its bombs are shown.
+ *
+ * Usage: java -cp mine_sweeper.jar server.GameServer [port] [max sessions] [max tiles] [max tiles per session]
+ */
+public class GameServer {
+
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_MAX_SESSIONS = 100_000;
+    private static final long DEFAULT_MAX_TILES = 40_000_000; // about 1 GB
+    private static final int DEFAULT_MAX_SESSION_TILES = 100_000; // as 250 x 400
+    private static final int MAX_SIZE = 5000;
+    private static final int MAX_BODY_SIZE = 1 << 16;
+    private static final int IDLE_TIMEOUT_MINUTES = 30;
+
+    /**
+     * platform threads per core handling requests, when there are no virtual threads
+     */
+    private static final int THREADS_PER_CORE = 4;
+
+    private final HttpServer httpServer;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService sweeper;
+    private final BoardPool boardPool = BoardPool.getShared();
+    private final Map<Long, ServerSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final AtomicInteger nSessions = new AtomicInteger(); // reserved slots, of created sessions or being created
+    private final AtomicLong nTiles = new AtomicLong(); // reserved tiles
+    private final int maxSessions;
+    private final long maxTiles;
+    private final int maxSessionTiles;
+
+    /**
+     * Starts serving on the loopback address
+     * @param port 0 for any free port, see getPort()
+     * @param maxTiles most tiles of all sessions together
+     * @param maxSessionTiles most tiles of a session's board
+     */
+    public GameServer(int port, int maxSessions, long maxTiles, int maxSessionTiles) throws IOException {
+        this.maxSessions = maxSessions;
+        this.maxTiles = maxTiles;
+        this.maxSessionTiles = maxSessionTiles;
+        // responses are written as headers then body: without this, Nagle's algorithm holds the body back until the
+        // client acknowledges the headers, which delayed acknowledgement stalls for tens of milliseconds
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        executor = newRequestExecutor();
+        httpServer.setExecutor(executor);
+        httpServer.createContext("/sessions", this::handle);
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::dropIdleSessions, 1, 1, TimeUnit.MINUTES);
+        httpServer.start();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int maxSessions = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_SESSIONS;
+        long maxTiles = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_MAX_TILES;
+        int maxSessionTiles = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_MAX_SESSION_TILES;
+        GameServer server = new GameServer(port, maxSessions, maxTiles, maxSessionTiles);
+        System.out.printf("Serving up to %d sessions and %d tiles, %d per session, on http://localhost:%d/sessions, %s%n",
+                maxSessions, maxTiles, maxSessionTiles, server.getPort(),
+                hasVirtualThreads() ? "on virtual threads" : "on a pool of platform threads");
+    }
+
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    public int getnSessions() {
+        return sessions.size();
+    }
+
+    /**
+     * Stops serving, after the requests being handled are answered
+     */
+    public void stop() {
+        httpServer.stop(0);
+        executor.shutdown();
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * @return a virtual thread per task executor if the runtime has one, or else a fixed pool of platform threads
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            // looked up at run time, so that the code still builds and runs on Java 11
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(THREADS_PER_CORE * Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    static boolean hasVirtualThreads() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        }
+        catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private void dropIdleSessions() {
+        long limit = System.nanoTime() - TimeUnit.MINUTES.toNanos(IDLE_TIMEOUT_MINUTES);
+        for (ServerSession session : sessions.values()) {
+            if (session.getLastAccess() - limit < 0) {
+                drop(session);
+            }
+        }
+    }
+
+    /**
+     * Removes the session and gives back its slot and tiles, unless another thread dropped it first
+     */
+    private void drop(ServerSession session) {
+        if (sessions.remove(session.getId(), session)) {
+            release(session.getBoard().getSizeY() * session.getBoard().getSizeX());
+        }
+    }
+
+    /**
+     * Reserves a slot and the tiles of a new session, atomically against other creations
+     * @return false, reserving nothing, if either limit would be exceeded
+     */
+    private boolean reserve(int sessionTiles) {
+        if (nSessions.incrementAndGet() > maxSessions) {
+            nSessions.decrementAndGet();
+            return false;
+        }
+        if (nTiles.addAndGet(sessionTiles) > maxTiles) {
+            release(sessionTiles);
+            return false;
+        }
+        return true;
+    }
+
+    private void release(int sessionTiles) {
+        nTiles.addAndGet(-sessionTiles);
+        nSessions.decrementAndGet();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            route(exchange);
+        }
+        catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        }
+        catch (RuntimeException e) {
+            sendError(exchange, 500, e.toString());
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        URI uri = exchange.getRequestURI();
+        // "", "sessions", then the id and the action if any
+        String[] path = uri.getPath().split("/");
+        Map<String, String> query = parseQuery(uri.getRawQuery());
+
+        if (path.length < 2 || !path[1].equals("sessions") || path.length > 4) {
+            sendError(exchange, 404, "not found");
+            return;
+        }
+        if (path.length == 2) {
+            if (!method.equals("POST")) {
+                sendError(exchange, 405, "method not allowed");
+                return;
+            }
+            create(exchange, query);
+            return;
+        }
+        ServerSession session = sessions.get(parseLong(path[2], "session id"));
+        if (session == null) {
+            sendError(exchange, 404, "no session " + path[2]);
+            return;
+        }
+        String action = path.length == 4 ? path[3] : "";
+        String expectedMethod = action.isEmpty() ? (method.equals("DELETE") ? "DELETE" : "GET") : "POST";
+        if (!method.equals(expectedMethod)) {
+            sendError(exchange, 405, "method not allowed");
+            return;
+        }
+        switch (action) {
+            case "":
+                if (method.equals("DELETE")) {
+                    drop(session);
+                    exchange.sendResponseHeaders(204, -1);
+                }
+                else {
+                    view(exchange, session);
+                }
+                break;
+            case "moves":
+                play(exchange, session);
+                break;
+            case "new":
+                newGame(exchange, session, query);
+                break;
+            case "next":
+                nextLevel(exchange, session);
+                break;
+            default:
+                sendError(exchange, 404, "not found");
+        }
+    }
+
+    private void create(HttpExchange exchange, Map<String, String> query) throws IOException {
+        int sizeY = parseSize(query.get("rows"), "rows", 15);
+        int sizeX = parseSize(query.get("cols"), "cols", 25);
+        String mode = query.get("mode");
+        String difficulty = query.get("difficulty");
+        String seed = query.get("seed");
+        if ((long) sizeY * sizeX > maxSessionTiles) {
+            throw new IllegalArgumentException("boards are limited to " + maxSessionTiles + " tiles");
+        }
+        if (!reserve(sizeY * sizeX)) {
+            sendError(exchange, 503, "too many sessions or tiles");
+            return;
+        }
+
+        StringBuilder out = new StringBuilder(256 + sizeY * sizeX);
+        boolean isCreated = false;
+        try {
+            ServerSession session = new ServerSession(nextId.getAndIncrement(), sizeY, sizeX, boardPool);
+            setUp(session, mode, difficulty, query.get("noguess"), seed, out);
+            sessions.put(session.getId(), session);
+            isCreated = true;
+        }
+        finally {
+            if (!isCreated) {
+                release(sizeY * sizeX);
+            }
+        }
+        send(exchange, 201, out);
+    }
+
+    /**
+     * Applies the settings of a new session, starts its game and writes its view
+     */
+    private static void setUp(ServerSession session, String mode, String difficulty, String noGuess, String seed,
+                              StringBuilder out) {
+        IManager manager = session.getManager();
+        session.lock.lock();
+        try {
+            if (mode != null) {
+                manager.setMode(parseEnum(IManager.Mode.class, mode, "mode"));
+            }
+            if (difficulty != null) {
+                manager.setDifficulty(parseEnum(IManager.Difficulty.class, difficulty, "difficulty"));
+            }
+            manager.setNoGuess(Boolean.parseBoolean(noGuess));
+            if (seed != null) {
+                manager.setNewGame(parseLong(seed, "seed"));
+            }
+            else {
+                manager.setNewGame();
+            }
+            session.writeView(out);
+        }
+        finally {
+            session.lock.unlock();
+        }
+    }
+
+    private void view(HttpExchange exchange, ServerSession session) throws IOException {
+        StringBuilder out = new StringBuilder(256 + session.getBoard().getSizeY() * session.getBoard().getSizeX());
+        session.lock.lock();
+        try {
+            session.startRequest();
+            session.writeView(out);
+        }
+        finally {
+            session.lock.unlock();
+        }
+        send(exchange, 200, out);
+    }
+
+    private void play(HttpExchange exchange, ServerSession session) throws IOException {
+        byte[] body = readBody(exchange);
+        int[] moves = new int[countMoves(body)];
+        int nMoves = parseMoves(body, moves);
+        StringBuilder out = new StringBuilder(256);
+        session.lock.lock();
+        try {
+            int nTiles = session.getBoard().getSizeY() * session.getBoard().getSizeX();
+            for (int k = 0; k < nMoves; ++k) {
+                int type = moves[k] & (1 << IGame.MOVE_TYPE_BITS) - 1;
+                int tile = moves[k] >>> IGame.MOVE_TYPE_BITS;
+                if (type > IGame.REDO || tile >= nTiles) throw new IllegalArgumentException("invalid move: " + moves[k]);
+            }
+            session.startRequest();
+            session.play(moves, nMoves, out);
+        }
+        finally {
+            session.lock.unlock();
+        }
+        send(exchange, 200, out);
+    }
+
+    private void newGame(HttpExchange exchange, ServerSession session, Map<String, String> query) throws IOException {
+        String seed = query.get("seed");
+        long parsedSeed = seed != null ? parseLong(seed, "seed") : 0;
+        StringBuilder out = new StringBuilder(256 + session.getBoard().getSizeY() * session.getBoard().getSizeX());
+        session.lock.lock();
+        try {
+            session.startRequest();
+            if (seed != null) {
+                session.getManager().setNewGame(parsedSeed);
+            }
+            else {
+                session.getManager().setNewGame();
+            }
+            session.writeView(out);
+        }
+        finally {
+            session.lock.unlock();
+        }
+        send(exchange, 200, out);
+    }
+
+    private void nextLevel(HttpExchange exchange, ServerSession session) throws IOException {
+        StringBuilder out = new StringBuilder(256 + session.getBoard().getSizeY() * session.getBoard().getSizeX());
+        boolean isNextLevel;
+        session.lock.lock();
+        try {
+            IManager manager = session.getManager();
+            isNextLevel = session.getState() == IGame.State.WON && manager.getCurrentLevel() < manager.getWinLevel();
+            if (isNextLevel) {
+                session.startRequest();
+                manager.setNextLevel();
+                session.writeView(out);
+            }
+        }
+        finally {
+            session.lock.unlock();
+        }
+        if (!isNextLevel) {
+            sendError(exchange, 409, "the level is not won, or is the last one");
+            return;
+        }
+        send(exchange, 200, out);
+    }
+
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_SIZE + 1);
+            if (body.length > MAX_BODY_SIZE) throw new IllegalArgumentException("body too large");
+            return body;
+        }
+    }
+
+    private static int countMoves(byte[] body) {
+        int n = 1;
+        for (byte b : body) {
+            if (b == ',') {
+                ++n;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Parses comma separated non-negative integers, ignoring white space
+     * @return the number of moves parsed
+     */
+    private static int parseMoves(byte[] body, int[] moves) {
+        int nMoves = 0;
+        long value = 0;
+        boolean hasDigits = false;
+        for (int k = 0; k <= body.length; ++k) {
+            int b = k < body.length ? body[k] : ',';
+            if (b >= '0' && b <= '9') {
+                value = 10 * value + b - '0';
+                if (value > Integer.MAX_VALUE) throw new IllegalArgumentException("invalid move");
+                hasDigits = true;
+            }
+            else if (b == ',') {
+                if (!hasDigits) {
+                    // only a body without any move may end on nothing
+                    if (k == body.length && nMoves == 0) break;
+                    throw new IllegalArgumentException("missing move");
+                }
+                moves[nMoves++] = (int) value;
+                value = 0;
+                hasDigits = false;
+            }
+            else if (!Character.isWhitespace(b)) {
+                throw new IllegalArgumentException("invalid character in moves: " + (char) b);
+            }
+        }
+        if (nMoves == 0) throw new IllegalArgumentException("no moves");
+        return nMoves;
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null) return parameters;
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0) {
+                parameters.put(parameter.substring(0, equals), parameter.substring(equals + 1));
+            }
+        }
+        return parameters;
+    }
+
+    private static int parseSize(String value, String name, int defaultSize) {
+        if (value == null) return defaultSize;
+        long size = parseLong(value, name);
+        if (size < 1 || size > MAX_SIZE) throw new IllegalArgumentException(name + " must be from 1 to " + MAX_SIZE);
+        return (int) size;
+    }
+
+    private static long parseLong(String value, String name) {
+        try {
+            return Long.parseLong(value);
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid " + name + ": " + value);
+        }
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value, String name) {
+        String constant = value.toUpperCase(Locale.ROOT).replace('-', '_');
+        for (E e : type.getEnumConstants()) {
+            // single, single_game and multilevel are all accepted
+            if (e.name().equals(constant) || e.name().startsWith(constant + "_")) return e;
+        }
+        throw new IllegalArgumentException("invalid " + name + ": " + value);
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder out = new StringBuilder("{\"error\":\"");
+        for (int k = 0; k < message.length(); ++k) {
+            char c = message.charAt(k);
+            if (c == '"' || c == '\\') {
+                out.append('\\');
+            }
+            out.append(c >= ' ' ? c : ' ');
+        }
+        send(exchange, status, out.append("\"}"));
+    }
+
+    private static void send(HttpExchange exchange, int status, CharSequence json) throws IOException {
+        // responses are ASCII
+        byte[] body = json.toString().getBytes(StandardCharsets.ISO_8859_1);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
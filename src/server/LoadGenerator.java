@@ -0,0 +1,236 @@
+package server;
+
+import interfaces.IGame;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Local load generator for GameServer. Creates a number of sessions, then has a number of clients play single moves on
+ * sessions drawn at random for a given time, each client waiting for the response to a move before the next one.
+ * Moves are reveals of random tiles, with a flag toggle one time in ten, and a lost or won game is started again.
+ * Reports the moves per second and the latency of the moves, as seen by the clients.
+ * Every client keeps a connection of its own and writes its requests and reads its responses on it directly, blocking:
+ * the asynchronous java.net.http client hands every request over between several threads, which took more time than
+ * the server itself and hid its latency.
+ * Usage: java -cp mine_sweeper.jar server.LoadGenerator [port] [sessions] [seconds] [clients] [rows] [cols]
+ */
+public class LoadGenerator {
+
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_N_SESSIONS = 10_000;
+    private static final int DEFAULT_SECONDS = 10;
+    private static final int DEFAULT_N_CLIENTS = 16;
+    private static final int FLAG_ONE_IN = 10;
+
+    /**
+     * fraction of the run spent before latencies are recorded, for the server and the clients to warm up
+     */
+    private static final int WARMUP_PERCENT = 20;
+
+    private final int port;
+    private final int sizeY;
+    private final int sizeX;
+
+    private LoadGenerator(int port, int sizeY, int sizeX) {
+        this.port = port;
+        this.sizeY = sizeY;
+        this.sizeX = sizeX;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int nSessions = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_N_SESSIONS;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_SECONDS;
+        int nClients = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_N_CLIENTS;
+        int sizeY = args.length > 4 ? Integer.parseInt(args[4]) : 15;
+        int sizeX = args.length > 5 ? Integer.parseInt(args[5]) : 25;
+        new LoadGenerator(port, sizeY, sizeX).run(nSessions, seconds, nClients);
+    }
+
+    private void run(int nSessions, int seconds, int nClients) throws IOException, InterruptedException {
+        Connection[] connections = new Connection[nClients];
+        for (int k = 0; k < nClients; ++k) {
+            connections[k] = new Connection(port);
+        }
+        long[] ids = new long[nSessions];
+        AtomicLong nextSession = new AtomicLong();
+        long start = System.nanoTime();
+        runClients(nClients, client -> {
+            for (int k; (k = (int) nextSession.getAndIncrement()) < nSessions; ) {
+                String view = connections[client].send("POST", "/sessions?rows=" + sizeY + "&cols=" + sizeX + "&seed=" + k, "");
+                ids[k] = parseId(view);
+            }
+        });
+        double createSeconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d sessions of %d x %d created in %.1f s, %.0f per second%n", nSessions, sizeY, sizeX,
+                createSeconds, nSessions / createSeconds);
+
+        long warmupEnd = System.nanoTime() + seconds * 10_000_000L * WARMUP_PERCENT;
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        int[][] latencies = new int[nClients][];
+        int[] nLatencies = new int[nClients];
+        long[] nNewGames = new long[nClients];
+        runClients(nClients, client -> {
+            Connection connection = connections[client];
+            SplittableRandom random = new SplittableRandom(client);
+            int[] clientLatencies = new int[1 << 16];
+            int n = 0;
+            int nTiles = sizeY * sizeX;
+            long now;
+            while ((now = System.nanoTime()) < end) {
+                long id = ids[random.nextInt(nSessions)];
+                int type = random.nextInt(FLAG_ONE_IN) == 0 ? IGame.FLAG : IGame.REVEAL;
+                String result = connection.send("POST", "/sessions/" + id + "/moves",
+                        Integer.toString(IGame.move(random.nextInt(nTiles), type)));
+                long after = System.nanoTime();
+                if (now >= warmupEnd) {
+                    if (n == clientLatencies.length) {
+                        clientLatencies = Arrays.copyOf(clientLatencies, 2 * n);
+                    }
+                    clientLatencies[n++] = (int) Math.min((after - now) / 1000, Integer.MAX_VALUE);
+                }
+                if (result.contains("\"state\":\"LOST\"") || result.contains("\"state\":\"WON\"")) {
+                    connection.send("POST", "/sessions/" + id + "/new", "");
+                    ++nNewGames[client];
+                }
+            }
+            latencies[client] = clientLatencies;
+            nLatencies[client] = n;
+        });
+        for (Connection connection : connections) {
+            connection.close();
+        }
+
+        int total = Arrays.stream(nLatencies).sum();
+        int[] all = new int[total];
+        for (int client = 0, position = 0; client < nClients; position += nLatencies[client++]) {
+            System.arraycopy(latencies[client], 0, all, position, nLatencies[client]);
+        }
+        Arrays.sort(all);
+        double measuredSeconds = seconds * (100 - WARMUP_PERCENT) / 100.0;
+        System.out.printf("%d clients: %.0f moves per second, %d new games%n", nClients, total / measuredSeconds,
+                Arrays.stream(nNewGames).sum());
+        if (total > 0) {
+            System.out.printf("move latency (us): p50 %d, p90 %d, p99 %d, p99.9 %d, max %d%n", percentile(all, 50),
+                    percentile(all, 90), percentile(all, 99), percentile(all, 99.9), all[total - 1]);
+        }
+    }
+
+    private static int percentile(int[] sorted, double percent) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(sorted.length * percent / 100) - 1)];
+    }
+
+    private static long parseId(String view) {
+        int start = view.indexOf("\"id\":") + 5;
+        int end = start;
+        while (end < view.length() && Character.isDigit(view.charAt(end))) {
+            ++end;
+        }
+        if (end == start) throw new IllegalStateException("unexpected response: " + view);
+        return Long.parseLong(view.substring(start, end));
+    }
+
+    /**
+     * Keep-alive HTTP/1.1 connection to the server, used by one client at a time
+     */
+    private static final class Connection {
+
+        private final Socket socket;
+        private final OutputStream out;
+        private final InputStream in;
+        private final StringBuilder line = new StringBuilder();
+
+        Connection(int port) throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            socket.setTcpNoDelay(true);
+            out = new BufferedOutputStream(socket.getOutputStream());
+            in = new BufferedInputStream(socket.getInputStream());
+        }
+
+        /**
+         * @return the body of the response
+         * @throws IllegalStateException if the server answers with an error
+         */
+        String send(String method, String path, String body) {
+            try {
+                String request = method + " " + path + " HTTP/1.1\r\nHost: localhost\r\nContent-Length: " + body.length()
+                        + "\r\n\r\n" + body;
+                out.write(request.getBytes(StandardCharsets.ISO_8859_1));
+                out.flush();
+
+                String status = readLine();
+                int contentLength = 0;
+                for (String header = readLine(); !header.isEmpty(); header = readLine()) {
+                    if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                        contentLength = Integer.parseInt(header.substring(15).trim());
+                    }
+                }
+                String response = new String(in.readNBytes(contentLength), StandardCharsets.ISO_8859_1);
+                if (!status.startsWith("HTTP/1.1 2")) {
+                    throw new IllegalStateException(method + " " + path + ": " + status + " " + response);
+                }
+                return response;
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(method + " " + path, e);
+            }
+        }
+
+        private String readLine() throws IOException {
+            line.setLength(0);
+            for (int c; (c = in.read()) != '\n'; ) {
+                if (c < 0) throw new EOFException("connection closed by the server");
+                if (c != '\r') {
+                    line.append((char) c);
+                }
+            }
+            return line.toString();
+        }
+
+        void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    private interface Client {
+        void run(int client);
+    }
+
+    /**
+     * Runs the clients on threads of their own and waits for them all
+     * @throws IllegalStateException if a client failed
+     */
+    private static void runClients(int nClients, Client body) throws InterruptedException {
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[nClients];
+        for (int k = 0; k < nClients; ++k) {
+            int client = k;
+            threads[k] = new Thread(() -> {
+                try {
+                    body.run(client);
+                }
+                catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                }
+            }, "load-client-" + k);
+            threads[k].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) throw new IllegalStateException("a client failed", failure.get());
+    }
+}
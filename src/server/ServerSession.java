@@ -0,0 +1,217 @@
+package server;
+
+import domain.BoardPool;
+import domain.Session;
+import interfaces.IBoard;
+import interfaces.IBoardListener;
+import interfaces.IGame;
+import interfaces.IManager;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One session hosted by GameServer, with the changes its last request made to the board.
+ * Requests on a session are played one at a time, under its lock, so a session is only ever played from one thread at a
+ * time, as Session requires. The lock is a ReentrantLock rather than a monitor, so that a virtual thread waiting on it
+ * does not hold up its carrier thread.
+ * Responses carry the tiles changed by the request only, as a list of tiles and a string of their symbols, or the whole
+ * grid when the board was laid out anew.
+ */
+final class ServerSession implements IBoardListener {
+
+    // symbols of the tiles, in the grid and in the changes. Numbers are '0' to '8'
+    static final char COVERED = '.';
+    static final char FLAGGED = 'F';
+    static final char BOMB = '*';
+
+    private final long id;
+    private final IBoard board;
+    private final IGame game;
+    private final IManager manager;
+    final ReentrantLock lock = new ReentrantLock();
+    private volatile long lastAccess;
+
+    // changes made by the request being played, guarded by lock
+    private int[] changedTiles = new int[64];
+    private int nChangedTiles;
+    private boolean isRegenerated;
+    private boolean wasOver; // whether the game was over, with its bombs shown, before the request
+
+    ServerSession(long id, int sizeY, int sizeX, BoardPool boardPool) {
+        this.id = id;
+        Session session = new Session(sizeY, sizeX, boardPool);
+        board = session.getBoard();
+        game = session.getGame();
+        manager = session.getManager();
+        board.addListener(this);
+        lastAccess = System.nanoTime();
+    }
+
+    long getId() {
+        return id;
+    }
+
+    IBoard getBoard() {
+        return board;
+    }
+
+    IManager getManager() {
+        return manager;
+    }
+
+    IGame.State getState() {
+        return game.getState();
+    }
+
+    long getLastAccess() {
+        return lastAccess;
+    }
+
+    /**
+     * Starts recording the changes of a request. Called under the lock
+     */
+    void startRequest() {
+        nChangedTiles = 0;
+        isRegenerated = false;
+        wasOver = isOver();
+        lastAccess = System.nanoTime();
+    }
+
+    /**
+     * Plays a batch of moves, see IGame.play(), and writes its result and the tiles it changed
+     */
+    void play(int[] moves, int count, StringBuilder out) {
+        IGame.BatchResult result = game.play(moves, count);
+        out.append("{\"id\":").append(id)
+                .append(",\"played\":").append(result.getnMovesPlayed())
+                .append(",\"opened\":").append(result.getnTilesOpened())
+                .append(",\"losingMove\":").append(result.getLosingMove());
+        appendStatus(out);
+        if (isRegenerated) {
+            appendGrid(out);
+        }
+        else {
+            appendChanges(out);
+        }
+        out.append('}');
+    }
+
+    /**
+     * Writes the whole session: its settings, its status and its grid
+     */
+    void writeView(StringBuilder out) {
+        out.append("{\"id\":").append(id)
+                .append(",\"rows\":").append(board.getSizeY())
+                .append(",\"cols\":").append(board.getSizeX())
+                .append(",\"mode\":\"").append(manager.getMode())
+                .append("\",\"difficulty\":\"").append(manager.getDifficulty())
+                .append("\",\"noGuess\":").append(manager.isNoGuess())
+                .append(",\"winLevel\":").append(manager.getWinLevel());
+        appendStatus(out);
+        appendGrid(out);
+        out.append('}');
+    }
+
+    private void appendStatus(StringBuilder out) {
+        out.append(",\"state\":\"").append(game.getState())
+                .append("\",\"level\":").append(manager.getCurrentLevel())
+                .append(",\"bombs\":").append(board.getnBombs())
+                .append(",\"tilesToUncover\":").append(board.nTilesToUncover())
+                .append(",\"canUndo\":").append(game.canUndo())
+                .append(",\"canRedo\":").append(game.canRedo());
+    }
+
+    private void appendGrid(StringBuilder out) {
+        boolean isOver = isOver();
+        int nTiles = board.getSizeY() * board.getSizeX();
+        out.append(",\"grid\":\"");
+        out.ensureCapacity(out.length() + nTiles + 2);
+        for (int tile = 0; tile < nTiles; ++tile) {
+            out.append(symbol(tile, isOver));
+        }
+        out.append('"');
+    }
+
+    /**
+     * Writes the tiles changed since startRequest(), in the order they changed, with the symbol of their current state.
+     * A tile changed twice is listed twice. Once the game is over, the bombs are added, as they are shown then, and
+     * again when an undo takes the end back, as they are covered again.
+     */
+    private void appendChanges(StringBuilder out) {
+        boolean isOver = isOver();
+        if (isOver || wasOver) {
+            addBombs();
+        }
+        out.append(",\"tiles\":[");
+        for (int k = 0; k < nChangedTiles; ++k) {
+            if (k > 0) {
+                out.append(',');
+            }
+            out.append(changedTiles[k]);
+        }
+        out.append("],\"values\":\"");
+        for (int k = 0; k < nChangedTiles; ++k) {
+            out.append(symbol(changedTiles[k], isOver));
+        }
+        out.append('"');
+    }
+
+    private boolean isOver() {
+        return game.getState() == IGame.State.WON || game.getState() == IGame.State.LOST;
+    }
+
+    private void addBombs() {
+        int nTiles = board.getSizeY() * board.getSizeX();
+        for (int tile = 0; tile < nTiles; ++tile) {
+            if (board.isBomb(tile) && !board.isVisible(tile)) {
+                addTile(tile);
+            }
+        }
+    }
+
+    private char symbol(int tile, boolean isOver) {
+        if (board.isVisible(tile) || isOver && board.isBomb(tile)) {
+            return board.isBomb(tile) ? BOMB : (char) ('0' + board.getnCloseBombs(tile));
+        }
+        return board.hasFlag(tile) ? FLAGGED : COVERED;
+    }
+
+    private void addTile(int tile) {
+        if (nChangedTiles == changedTiles.length) {
+            changedTiles = Arrays.copyOf(changedTiles, 2 * nChangedTiles);
+        }
+        changedTiles[nChangedTiles++] = tile;
+    }
+
+    @Override
+    public void tilesRevealed(int[] tiles, int count) {
+        addTiles(tiles, count);
+    }
+
+    @Override
+    public void tilesCovered(int[] tiles, int count) {
+        addTiles(tiles, count);
+    }
+
+    @Override
+    public void flagToggled(int tile) {
+        addTile(tile);
+    }
+
+    @Override
+    public void boardRegenerated() {
+        isRegenerated = true;
+        nChangedTiles = 0;
+    }
+
+    private void addTiles(int[] tiles, int count) {
+        // reveals made after a new layout, such as the opened start tile of a no-guess board, are in the grid
+        if (isRegenerated) return;
+        if (nChangedTiles + count > changedTiles.length) {
+            changedTiles = Arrays.copyOf(changedTiles, Math.max(2 * changedTiles.length, nChangedTiles + count));
+        }
+        System.arraycopy(tiles, 0, changedTiles, nChangedTiles, count);
+        nChangedTiles += count;
+    }
+}
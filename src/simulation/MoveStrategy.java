@@ -0,0 +1,18 @@
+package simulation;
+
+import interfaces.IBoard;
+import interfaces.IGame;
+import interfaces.IManager;
+
+/**
+ * Plays moves on behalf of a simulated player.
+ * A strategy instance is only ever used by one thread at a time, so it may keep state of its own.
+ */
+public interface MoveStrategy {
+
+    /**
+     * Makes exactly one move (a reveal, or a flag toggle) on a game in progress.
+     * The manager is only there to read the game settings, such as the number of bombs.
+     */
+    void makeMove(IBoard board, IGame game, IManager manager);
+}
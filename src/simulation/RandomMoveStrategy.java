@@ -0,0 +1,30 @@
+package simulation;
+
+import interfaces.IBoard;
+import interfaces.IGame;
+import interfaces.IManager;
+
+import java.util.SplittableRandom;
+
+/**
+ * Reveals a covered tile chosen at random. Serves as a baseline for smarter strategies.
+ */
+public class RandomMoveStrategy implements MoveStrategy {
+
+    private final SplittableRandom random;
+
+    public RandomMoveStrategy(SplittableRandom random) {
+        this.random = random;
+    }
+
+    @Override
+    public void makeMove(IBoard board, IGame game, IManager manager) {
+        int i, j;
+        do {
+            i = random.nextInt(board.getSizeY());
+            j = random.nextInt(board.getSizeX());
+        } while (board.isVisible(i * board.getSizeX() + j));
+
+        game.revealTile(i, j);
+    }
+}
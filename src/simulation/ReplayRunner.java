@@ -0,0 +1,184 @@
+package simulation;
+
+import domain.Replay;
+import domain.ReplayVerifier;
+import interfaces.IManager;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Headless entry point for replays. Records simulated games as a replay corpus, or verifies replay files on all cores.
+ * Replays are read as they are verified, in batches handed to the pool, each thread with a verifier of its own.
+ * Usage: java -cp mine_sweeper.jar simulation.ReplayRunner record <file> [games per configuration] [seed] [random|solver]
+ *        java -cp mine_sweeper.jar simulation.ReplayRunner verify <file or directory>...
+ */
+public class ReplayRunner {
+
+    private static final long DEFAULT_N_GAMES = 1000;
+
+    /**
+     * number of replays verified by a task
+     */
+    private static final int REPLAYS_PER_TASK = 256;
+
+    private static final ThreadLocal<ReplayVerifier> VERIFIERS = ThreadLocal.withInitial(ReplayVerifier::new);
+
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 2 && args[0].equals("record")) {
+            record(Paths.get(args[1]), args);
+        }
+        else if (args.length >= 2 && args[0].equals("verify")) {
+            verify(args);
+        }
+        else {
+            System.out.println("Usage: ReplayRunner record <file> [games per configuration] [seed] [random|solver]");
+            System.out.println("       ReplayRunner verify <file or directory>...");
+        }
+    }
+
+    /**
+     * Plays games for every mode, difficulty and board size, as SimulationRunner does, and writes their replays to the file
+     */
+    private static void record(Path file, String[] args) throws IOException {
+        long nGames = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_N_GAMES;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+        Function<SplittableRandom, MoveStrategy> strategy =
+                args.length > 4 && args[4].equals("solver") ? SolverMoveStrategy::new : RandomMoveStrategy::new;
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+        long start = System.nanoTime();
+        long nBytes = 0;
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            Replay.writeFileHeader(out);
+            for (IManager.Mode mode : IManager.Mode.values()) {
+                for (IManager.Difficulty difficulty : IManager.Difficulty.values()) {
+                    for (int[] size : SimulationRunner.GRID_SIZES) {
+                        var simulation = new Simulation(mode, difficulty, size[0], size[1], strategy, true);
+                        byte[] replays = simulation.run(pool, nGames, seed++).getReplays();
+                        out.write(replays);
+                        nBytes += replays.length;
+                    }
+                }
+            }
+        }
+        System.out.printf("%d games per configuration recorded to %s: %d bytes in %.1f s%n",
+                nGames, file, nBytes, (System.nanoTime() - start) / 1e9);
+    }
+
+    private static void verify(String[] args) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (int k = 1; k < args.length; ++k) {
+            Path path = Paths.get(args[k]);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> walk = Files.walk(path)) {
+                    files.addAll(walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList()));
+                }
+            }
+            else {
+                files.add(path);
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        ReplayVerifier.Verdict[] verdicts = ReplayVerifier.Verdict.values();
+        System.out.printf("%d files on %d threads%n", files.size(), pool.getParallelism());
+        System.out.printf("%-40s %9s", "file", "replays");
+        for (ReplayVerifier.Verdict verdict : verdicts) {
+            System.out.printf(" %12s", verdict);
+        }
+        System.out.println();
+
+        long[] totals = new long[verdicts.length];
+        long start = System.nanoTime();
+        for (Path file : files) {
+            long[] counts = new long[verdicts.length];
+            boolean isCutShort = verifyFile(file, pool, counts);
+            long nReplays = 0;
+            for (int k = 0; k < counts.length; ++k) {
+                nReplays += counts[k];
+                totals[k] += counts[k];
+            }
+            System.out.printf("%-40s %9d", file.getFileName(), nReplays);
+            for (long count : counts) {
+                System.out.printf(" %12d", count);
+            }
+            System.out.println(isCutShort ? "  (not a replay file, or cut short)" : "");
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long nReplays = 0;
+        for (long total : totals) {
+            nReplays += total;
+        }
+        System.out.printf("%d replays, %d valid, in %.2f s: %.0f replays/s%n",
+                nReplays, totals[ReplayVerifier.Verdict.VALID.ordinal()], seconds, nReplays / seconds);
+    }
+
+    /**
+     * Adds the verdicts of the replays of the file to counts
+     * @return whether the file ended with something else than a replay, or was not a replay file
+     */
+    private static boolean verifyFile(Path file, ForkJoinPool pool, long[] counts) throws IOException {
+        List<ForkJoinTask<long[]>> tasks = new ArrayList<>();
+        boolean isCutShort = false;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) return true;
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (!Replay.readFileHeader(buffer)) return true;
+
+            Replay[] batch = new Replay[REPLAYS_PER_TASK];
+            int nReplays = 0;
+            while (buffer.hasRemaining()) {
+                try {
+                    batch[nReplays++] = Replay.read(buffer);
+                }
+                catch (IllegalArgumentException e) {
+                    --nReplays;
+                    isCutShort = true;
+                    break;
+                }
+                if (nReplays == batch.length) {
+                    tasks.add(pool.submit(verifyTask(batch, nReplays)));
+                    batch = new Replay[REPLAYS_PER_TASK];
+                    nReplays = 0;
+                }
+            }
+            tasks.add(pool.submit(verifyTask(batch, nReplays)));
+        }
+
+        for (ForkJoinTask<long[]> task : tasks) {
+            long[] taskCounts = task.join();
+            for (int k = 0; k < counts.length; ++k) {
+                counts[k] += taskCounts[k];
+            }
+        }
+        return isCutShort;
+    }
+
+    private static ForkJoinTask<long[]> verifyTask(Replay[] replays, int nReplays) {
+        return ForkJoinTask.adapt(() -> {
+            ReplayVerifier verifier = VERIFIERS.get();
+            long[] counts = new long[ReplayVerifier.Verdict.values().length];
+            for (int k = 0; k < nReplays; ++k) {
+                ++counts[verifier.verify(replays[k]).ordinal()];
+            }
+            return counts;
+        });
+    }
+}
@@ -0,0 +1,139 @@
+package simulation;
+
+import domain.ReplayRecorder;
+import domain.Session;
+import interfaces.IBoard;
+import interfaces.IGame;
+import interfaces.IManager;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * Plays a number of games with a given configuration, headless and spread over a fork-join pool.
+ * Every leaf task plays its share of the games on a session of its own, so no state is shared between threads.
+ * Board seeds and moves are drawn from the run's seed, so two runs with the same seed play the same games.
+ * The games may also be recorded, one replay per level, to build replay corpora.
+ */
+public class Simulation {
+
+    /**
+     * number of games below which a task stops splitting
+     */
+    private static final int GAMES_PER_TASK = 256;
+
+    private final IManager.Mode mode;
+    private final IManager.Difficulty difficulty;
+    private final int sizeY;
+    private final int sizeX;
+    private final Function<SplittableRandom, MoveStrategy> strategyFactory;
+    private final boolean isRecording;
+
+    /**
+     * @param strategyFactory creates the strategy of one leaf task from a random generator reserved to it
+     */
+    public Simulation(IManager.Mode mode, IManager.Difficulty difficulty, int sizeY, int sizeX,
+                      Function<SplittableRandom, MoveStrategy> strategyFactory) {
+        this(mode, difficulty, sizeY, sizeX, strategyFactory, false);
+    }
+
+    /**
+     * @param isRecording whether to record the games, see SimulationResult.getReplays()
+     */
+    public Simulation(IManager.Mode mode, IManager.Difficulty difficulty, int sizeY, int sizeX,
+                      Function<SplittableRandom, MoveStrategy> strategyFactory, boolean isRecording) {
+        this.mode = mode;
+        this.difficulty = difficulty;
+        this.sizeY = sizeY;
+        this.sizeX = sizeX;
+        this.strategyFactory = strategyFactory;
+        this.isRecording = isRecording;
+    }
+
+    public SimulationResult run(ForkJoinPool pool, long nGames, long seed) {
+        return pool.invoke(new GamesTask(nGames, new SplittableRandom(seed)));
+    }
+
+    private class GamesTask extends RecursiveTask<SimulationResult> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long nGames;
+        private final SplittableRandom random;
+
+        GamesTask(long nGames, SplittableRandom random) {
+            this.nGames = nGames;
+            this.random = random;
+        }
+
+        @Override
+        protected SimulationResult compute() {
+            if (nGames <= GAMES_PER_TASK) {
+                return play();
+            }
+            long half = nGames / 2;
+            GamesTask left = new GamesTask(half, random.split());
+            left.fork();
+            SimulationResult right = new GamesTask(nGames - half, random).compute();
+            return left.join().merge(right);
+        }
+
+        private SimulationResult play() {
+            Session session = new Session(sizeY, sizeX);
+            IBoard board = session.getBoard();
+            IGame game = session.getGame();
+            IManager manager = session.getManager();
+            manager.setMode(mode);
+            manager.setDifficulty(difficulty);
+            MoveStrategy strategy = strategyFactory.apply(random);
+
+            SimulationResult result = new SimulationResult();
+            ReplayRecorder recorder = null;
+            if (isRecording) {
+                var out = new DataOutputStream(result.getReplayStream());
+                recorder = new ReplayRecorder(board, game, replay -> {
+                    try {
+                        replay.write(out);
+                    }
+                    catch (IOException e) {
+                        // in-memory stream
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            for (long n = 0; n < nGames; ++n) {
+                manager.setNewGame(random.nextLong());
+                int levelsCleared = 0;
+                int moves = 0;
+                int tilesRevealed = 0;
+
+                while (true) {
+                    int tilesToUncover = board.nTilesToUncover();
+                    // a move either reveals or flags, so a level never takes more moves than twice its tiles
+                    int maxMoves = 2 * board.getSizeX() * board.getSizeY();
+                    for (int levelMoves = 0; game.getState() == IGame.State.PLAYING && levelMoves < maxMoves; ++levelMoves) {
+                        strategy.makeMove(board, game, manager);
+                        ++moves;
+                    }
+                    tilesRevealed += tilesToUncover - board.nTilesToUncover();
+
+                    if (game.getState() != IGame.State.WON) break;
+                    ++levelsCleared;
+                    if (manager.getCurrentLevel() == manager.getWinLevel()) break;
+                    manager.setNextLevel();
+                }
+
+                result.addGame(levelsCleared == manager.getWinLevel(), levelsCleared, moves, tilesRevealed);
+            }
+            if (recorder != null) {
+                recorder.finish();
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package simulation;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Totals gathered over a number of simulated games. Results of separate batches are combined with merge().
+ */
+public class SimulationResult {
+
+    private final ByteArrayOutputStream replays = new ByteArrayOutputStream(); // empty unless the games are recorded
+
+    private long nGames;
+    private long nWins;
+    private long nLevelsCleared;
+    private long nMoves;
+    private long nTilesRevealed;
+
+    void addGame(boolean won, int levelsCleared, int moves, int tilesRevealed) {
+        ++nGames;
+        if (won) {
+            ++nWins;
+        }
+        nLevelsCleared += levelsCleared;
+        nMoves += moves;
+        nTilesRevealed += tilesRevealed;
+    }
+
+    SimulationResult merge(SimulationResult other) {
+        nGames += other.nGames;
+        nWins += other.nWins;
+        nLevelsCleared += other.nLevelsCleared;
+        nMoves += other.nMoves;
+        nTilesRevealed += other.nTilesRevealed;
+        replays.writeBytes(other.replays.toByteArray());
+        return this;
+    }
+
+    ByteArrayOutputStream getReplayStream() {
+        return replays;
+    }
+
+    /**
+     * @return the replays of the games, one after the other in the replay file format, without the file header
+     */
+    public byte[] getReplays() {
+        return replays.toByteArray();
+    }
+
+    public long getnGames() {
+        return nGames;
+    }
+
+    public long getnWins() {
+        return nWins;
+    }
+
+    public double getWinRate() {
+        return nGames == 0 ? 0 : (double) nWins / nGames;
+    }
+
+    public double getAverageLevelsCleared() {
+        return nGames == 0 ? 0 : (double) nLevelsCleared / nGames;
+    }
+
+    public double getAverageMoves() {
+        return nGames == 0 ? 0 : (double) nMoves / nGames;
+    }
+
+    public double getAverageTilesRevealed() {
+        return nGames == 0 ? 0 : (double) nTilesRevealed / nGames;
+    }
+}
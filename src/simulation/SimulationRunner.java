@@ -0,0 +1,56 @@
+package simulation;
+
+import domain.Manager;
+import interfaces.IManager;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * Headless entry point. Simulates games for every mode, difficulty and board size and prints the statistics.
+ * Usage: java -cp mine_sweeper.jar simulation.SimulationRunner [games per configuration] [seed] [random|solver]
+ */
+public class SimulationRunner {
+
+    private static final long DEFAULT_N_GAMES = 100_000;
+
+    static final int[][] GRID_SIZES = {
+            {Manager.SMALL_GRID_SIZE_Y, Manager.SMALL_GRID_SIZE_X},
+            {Manager.MEDIUM_GRID_SIZE_Y, Manager.MEDIUM_GRID_SIZE_X},
+            {Manager.LARGE_GRID_SIZE_Y, Manager.LARGE_GRID_SIZE_X}
+    };
+
+    public static void main(String[] args) {
+
+        long nGames = args.length > 0 ? Long.parseLong(args[0]) : DEFAULT_N_GAMES;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+        Function<SplittableRandom, MoveStrategy> strategy =
+                args.length > 2 && args[2].equals("solver") ? SolverMoveStrategy::new : RandomMoveStrategy::new;
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+        System.out.printf("%d games per configuration on %d threads%n", nGames, pool.getParallelism());
+        System.out.printf("%-12s %-7s %-6s %9s %8s %9s %9s %12s%n",
+                "mode", "level", "grid", "win rate", "levels", "moves", "tiles", "games/s");
+
+        for (IManager.Mode mode : IManager.Mode.values()) {
+            for (IManager.Difficulty difficulty : IManager.Difficulty.values()) {
+                for (int[] size : GRID_SIZES) {
+                    var simulation = new Simulation(mode, difficulty, size[0], size[1], strategy);
+
+                    long start = System.nanoTime();
+                    SimulationResult result = simulation.run(pool, nGames, seed++);
+                    double seconds = (System.nanoTime() - start) / 1e9;
+
+                    System.out.printf("%-12s %-7s %-6s %8.3f%% %8.2f %9.1f %9.1f %12.0f%n",
+                            mode, difficulty, size[1] + "x" + size[0],
+                            100 * result.getWinRate(),
+                            result.getAverageLevelsCleared(),
+                            result.getAverageMoves(),
+                            result.getAverageTilesRevealed(),
+                            result.getnGames() / seconds);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package simulation;
+
+import interfaces.IBoard;
+import interfaces.IGame;
+import interfaces.IManager;
+import solver.ProbabilityEngine;
+import solver.Solver;
+
+import java.util.SplittableRandom;
+
+/**
+ * Reveals a tile the solver knows to be safe and, when there is none, the covered tile least likely to be a bomb.
+ * Never places flags.
+ */
+public class SolverMoveStrategy implements MoveStrategy {
+
+    private IBoard board;
+    private Solver solver;
+    private ProbabilityEngine engine;
+
+    /**
+     * @param random unused: the strategy is deterministic
+     */
+    public SolverMoveStrategy(SplittableRandom random) {
+    }
+
+    @Override
+    public void makeMove(IBoard board, IGame game, IManager manager) {
+        if (board != this.board) {
+            if (solver != null) {
+                solver.detach();
+            }
+            this.board = board;
+            solver = new Solver(board);
+            // the strategy already runs on a pool thread, one per leaf task of the simulation
+            engine = new ProbabilityEngine(board, null);
+        }
+
+        int sizeX = board.getSizeX();
+        int tile = solver.getSafeTile();
+        if (tile >= 0) {
+            game.revealTile(tile / sizeX, tile % sizeX);
+            return;
+        }
+
+        engine.compute(manager.getnBombs());
+        tile = engine.getSafestTile();
+        game.revealTile(tile / sizeX, tile % sizeX);
+    }
+}
@@ -0,0 +1,721 @@
+package solver;
+
+import interfaces.IBoard;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Computes the probability of every covered tile to be a bomb, from the visible numbers and the total number of bombs.
+ * The frontier (covered tiles next to a number) splits into components that share no number. Each component is
+ * enumerated on its own, in parallel, by a memoized backtracking over its tiles: layouts that leave the same needs
+ * to the numbers still open share their state. The components are then combined with the number of ways to place
+ * the remaining bombs on the tiles off the frontier.
+ * A component that exceeds the time budget or the state cap is approximated instead, from the local ratios of its numbers.
+ * Like Solver, it reads only the visible state of the board. Tiles are packed indexes (i * sizeX + j).
+ */
+public class ProbabilityEngine {
+
+    public static final long DEFAULT_TIME_BUDGET_MILLIS = 100;
+
+    /**
+     * cap on the number of states of one component's enumeration, which bounds its memory
+     */
+    private static final int MAX_STATES = 1 << 19;
+
+    private static final int COVERED = -1;
+    private static final int VISIBLE_BOMB = -2;
+
+    private final IBoard board;
+    private final ForkJoinPool pool;
+    private long timeBudgetNanos = DEFAULT_TIME_BUDGET_MILLIS * 1_000_000;
+
+    private int sizeX;
+    private int sizeY;
+    private int[] numbers;
+    private double[] probabilities;
+    private boolean isExact;
+
+    public ProbabilityEngine(IBoard board) {
+        this(board, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool pool the components are enumerated on, or null to enumerate them on the calling thread
+     */
+    public ProbabilityEngine(IBoard board, ForkJoinPool pool) {
+        this.board = board;
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the time past which the components still being enumerated are approximated
+     */
+    public void setTimeBudget(long millis) {
+        timeBudgetNanos = millis * 1_000_000;
+    }
+
+    /**
+     * @param nBombs total number of bombs on the board, as given by IManager.getnBombs()
+     * @return whether every probability is exact, see isExact()
+     */
+    public boolean compute(int nBombs) {
+        long deadline = System.nanoTime() + timeBudgetNanos;
+        sizeX = board.getSizeX();
+        sizeY = board.getSizeY();
+        int nTiles = sizeX * sizeY;
+        if (numbers == null || numbers.length < nTiles) {
+            numbers = new int[nTiles];
+            probabilities = new double[nTiles];
+        }
+        Arrays.fill(probabilities, 0, nTiles, 0);
+
+        int nBombsLeft = nBombs;
+        for (int tile = 0; tile < nTiles; ++tile) {
+            if (!board.isVisible(tile)) {
+                numbers[tile] = COVERED;
+            }
+            else if (board.isBomb(tile)) {
+                numbers[tile] = VISIBLE_BOMB;
+                --nBombsLeft;
+                probabilities[tile] = 1;
+            }
+            else {
+                numbers[tile] = board.getnCloseBombs(tile);
+            }
+        }
+
+        List<Component> components = findComponents();
+        int nOutside = 0;
+        for (int tile = 0; tile < nTiles; ++tile) {
+            if (numbers[tile] == COVERED) {
+                ++nOutside;
+            }
+        }
+        for (Component component : components) {
+            nOutside -= component.tiles.length;
+        }
+
+        if (components.size() == 1 || pool == null) {
+            for (Component component : components) {
+                component.enumerate(deadline);
+            }
+        }
+        else if (components.size() > 1) {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(components.size());
+            for (Component component : components) {
+                tasks.add(ForkJoinTask.adapt(() -> component.enumerate(deadline)));
+            }
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        }
+
+        isExact = true;
+        for (Component component : components) {
+            isExact &= component.isExact;
+        }
+        if (!combine(components, nOutside, nBombsLeft)) {
+            // no layout agrees with the total number of bombs: fall back on the local estimates
+            isExact = false;
+            double frontierBombs = 0;
+            for (Component component : components) {
+                component.approximate();
+                for (int d = 0; d < component.tiles.length; ++d) {
+                    probabilities[component.tiles[d]] = component.estimates[d];
+                    frontierBombs += component.estimates[d];
+                }
+            }
+            setOutside(nOutside > 0 ? Math.min(1, Math.max(0, (nBombsLeft - frontierBombs) / nOutside)) : 0);
+        }
+        return isExact;
+    }
+
+    /**
+     * @return the probability for the tile to be a bomb, as of the last call to compute(). Revealed tiles have 0,
+     * unless they are a bomb
+     */
+    public double getProbability(int i, int j) {
+        return probabilities[i * sizeX + j];
+    }
+
+    /**
+     * @return a covered tile with the lowest probability to be a bomb, or -1 if there is no covered tile
+     */
+    public int getSafestTile() {
+        int safest = -1;
+        for (int tile = 0; tile < sizeX * sizeY; ++tile) {
+            if (numbers[tile] == COVERED && (safest < 0 || probabilities[tile] < probabilities[safest])) {
+                safest = tile;
+            }
+        }
+        return safest;
+    }
+
+    /**
+     * @return false if the last call to compute() had to approximate some probabilities
+     */
+    public boolean isExact() {
+        return isExact;
+    }
+
+    /**
+     * Groups the frontier tiles that share a number, with a union-find over the tile indexes
+     */
+    private List<Component> findComponents() {
+        int nTiles = sizeX * sizeY;
+        int[] parent = new int[nTiles];
+        Arrays.fill(parent, -1);
+        int[] covered = new int[8];
+
+        for (int tile = 0; tile < nTiles; ++tile) {
+            if (numbers[tile] < 0) continue;
+            int nCovered = coveredNeighbours(tile, covered);
+            for (int k = 0; k < nCovered; ++k) {
+                if (parent[covered[k]] < 0) {
+                    parent[covered[k]] = covered[k];
+                }
+                if (k > 0) {
+                    parent[find(parent, covered[k])] = find(parent, covered[0]);
+                }
+            }
+        }
+
+        HashMap<Integer, List<Integer>> tilesByRoot = new HashMap<>();
+        for (int tile = 0; tile < nTiles; ++tile) {
+            if (parent[tile] >= 0) {
+                tilesByRoot.computeIfAbsent(find(parent, tile), root -> new ArrayList<>()).add(tile);
+            }
+        }
+        List<Component> components = new ArrayList<>(tilesByRoot.size());
+        for (List<Integer> tiles : tilesByRoot.values()) {
+            components.add(new Component(tiles));
+        }
+        return components;
+    }
+
+    private static int find(int[] parent, int tile) {
+        while (parent[tile] != tile) {
+            parent[tile] = parent[parent[tile]];
+            tile = parent[tile];
+        }
+        return tile;
+    }
+
+    /**
+     * @return the number of covered neighbours of the tile, stored in covered
+     */
+    private int coveredNeighbours(int tile, int[] covered) {
+        int count = 0;
+        int row = tile / sizeX;
+        int col = tile - row * sizeX;
+        for (int i = Math.max(row - 1, 0), lastRow = Math.min(row + 1, sizeY - 1); i <= lastRow; ++i) {
+            for (int j = Math.max(col - 1, 0), lastCol = Math.min(col + 1, sizeX - 1); j <= lastCol; ++j) {
+                if (numbers[i * sizeX + j] == COVERED) {
+                    covered[count++] = i * sizeX + j;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Weighs the layouts of every component by the number of ways to place the bombs left on the tiles off the frontier
+     * @return false if no layout has the right number of bombs
+     */
+    private boolean combine(List<Component> components, int nOutside, int nBombsLeft) {
+        int nComponents = components.size();
+        Counts[] prefix = new Counts[nComponents + 1];
+        Counts[] suffix = new Counts[nComponents + 1];
+        prefix[0] = Counts.one();
+        suffix[nComponents] = Counts.one();
+        int nFrontierTiles = 0;
+        for (int c = 0; c < nComponents; ++c) {
+            prefix[c + 1] = Counts.product(prefix[c], components.get(c).weights);
+            nFrontierTiles += components.get(c).tiles.length;
+        }
+        for (int c = nComponents - 1; c >= 0; --c) {
+            suffix[c] = Counts.product(components.get(c).weights, suffix[c + 1]);
+        }
+
+        // outsideWays[f]: ways, relative to the largest, to place the bombs left on the tiles off the frontier,
+        // when the frontier holds f bombs
+        double[] outsideWays = new double[nFrontierTiles + 1];
+        double[] logFactorials = new double[nOutside + 1];
+        for (int n = 2; n <= nOutside; ++n) {
+            logFactorials[n] = logFactorials[n - 1] + Math.log(n);
+        }
+        double maxLog = Double.NEGATIVE_INFINITY;
+        for (int f = 0; f <= nFrontierTiles; ++f) {
+            int outsideBombs = nBombsLeft - f;
+            if (outsideBombs >= 0 && outsideBombs <= nOutside) {
+                maxLog = Math.max(maxLog, logFactorials[nOutside] - logFactorials[outsideBombs] - logFactorials[nOutside - outsideBombs]);
+            }
+        }
+        if (maxLog == Double.NEGATIVE_INFINITY) return false;
+        for (int f = 0; f <= nFrontierTiles; ++f) {
+            int outsideBombs = nBombsLeft - f;
+            if (outsideBombs >= 0 && outsideBombs <= nOutside) {
+                outsideWays[f] = Math.exp(logFactorials[nOutside] - logFactorials[outsideBombs]
+                        - logFactorials[nOutside - outsideBombs] - maxLog);
+            }
+        }
+
+        for (int c = 0; c < nComponents; ++c) {
+            Component component = components.get(c);
+            Counts others = Counts.product(prefix[c], suffix[c + 1]);
+            // rest[m]: weight of all the layouts off the component, when it holds m bombs
+            Counts weights = component.weights;
+            double[] rest = new double[weights.values.length];
+            double total = 0;
+            for (int m = weights.low; m <= weights.high(); ++m) {
+                for (int k = others.low; k <= others.high(); ++k) {
+                    if (m + k <= nFrontierTiles) {
+                        rest[m - weights.low] += others.get(k) * outsideWays[m + k];
+                    }
+                }
+                total += weights.get(m) * rest[m - weights.low];
+            }
+            if (total == 0) return false;
+
+            for (int d = 0; d < component.tiles.length; ++d) {
+                Counts tileWeights = component.tileWeights[d];
+                double weight = 0;
+                for (int m = Math.max(tileWeights.low, weights.low); m <= Math.min(tileWeights.high(), weights.high()); ++m) {
+                    weight += tileWeights.get(m) * rest[m - weights.low];
+                }
+                probabilities[component.tiles[d]] = weight / total;
+            }
+        }
+
+        if (nOutside > 0) {
+            Counts all = prefix[nComponents];
+            double expectedBombs = 0;
+            double total = 0;
+            for (int f = all.low; f <= all.high(); ++f) {
+                double weight = all.get(f) * outsideWays[f];
+                expectedBombs += weight * (nBombsLeft - f);
+                total += weight;
+            }
+            if (total == 0) return false;
+            setOutside(expectedBombs / total / nOutside);
+        }
+        return true;
+    }
+
+    private void setOutside(double probability) {
+        for (int tile = 0; tile < sizeX * sizeY; ++tile) {
+            if (numbers[tile] == COVERED && !isFrontier(tile)) {
+                probabilities[tile] = probability;
+            }
+        }
+    }
+
+    private boolean isFrontier(int tile) {
+        int row = tile / sizeX;
+        int col = tile - row * sizeX;
+        for (int i = Math.max(row - 1, 0), lastRow = Math.min(row + 1, sizeY - 1); i <= lastRow; ++i) {
+            for (int j = Math.max(col - 1, 0), lastCol = Math.min(col + 1, sizeX - 1); j <= lastCol; ++j) {
+                if (numbers[i * sizeX + j] >= 0) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Numbers of layouts by number of bombs: values[m - low] counts the layouts with m bombs
+     */
+    private static final class Counts {
+        private static final double[] NONE = new double[0];
+
+        int low;
+        double[] values = NONE;
+
+        static Counts one() {
+            Counts counts = new Counts();
+            counts.values = new double[] {1};
+            return counts;
+        }
+
+        int high() {
+            return low + values.length - 1;
+        }
+
+        double get(int m) {
+            return m < low || m > high() ? 0 : values[m - low];
+        }
+
+        /**
+         * Adds other, with every bomb count increased by shift
+         */
+        void addShifted(Counts other, int shift) {
+            if (other.values.length == 0) return;
+            int otherLow = other.low + shift;
+            reserve(otherLow, otherLow + other.values.length - 1);
+            for (int k = 0; k < other.values.length; ++k) {
+                values[otherLow - low + k] += other.values[k];
+            }
+        }
+
+        /**
+         * Adds the layouts combining one of a and one of b, plus shift bombs
+         */
+        void addProduct(Counts a, Counts b, int shift) {
+            if (a.values.length == 0 || b.values.length == 0) return;
+            reserve(a.low + b.low + shift, a.high() + b.high() + shift);
+            for (int x = 0; x < a.values.length; ++x) {
+                for (int y = 0; y < b.values.length; ++y) {
+                    values[a.low + b.low + shift - low + x + y] += a.values[x] * b.values[y];
+                }
+            }
+        }
+
+        private void reserve(int from, int to) {
+            if (values.length == 0) {
+                low = from;
+                values = new double[to - from + 1];
+                return;
+            }
+            int newLow = Math.min(low, from);
+            int newHigh = Math.max(high(), to);
+            if (newLow != low || newHigh != high()) {
+                double[] grown = new double[newHigh - newLow + 1];
+                System.arraycopy(values, 0, grown, low - newLow, values.length);
+                low = newLow;
+                values = grown;
+            }
+        }
+
+        void scale(double factor) {
+            for (int k = 0; k < values.length; ++k) {
+                values[k] *= factor;
+            }
+        }
+
+        double max() {
+            double max = 0;
+            for (double value : values) {
+                max = Math.max(max, value);
+            }
+            return max;
+        }
+
+        /**
+         * @return the layouts of a and b together, scaled so that the largest count is 1
+         */
+        static Counts product(Counts a, Counts b) {
+            Counts product = new Counts();
+            product.addProduct(a, b, 0);
+            double max = product.max();
+            if (max > 0) {
+                product.scale(1 / max);
+            }
+            return product;
+        }
+    }
+
+    /**
+     * Enumeration state: the tiles before depth d are decided, and needs holds what the open numbers still need
+     */
+    private static final class State {
+        final byte[] needs;
+        final Counts forward = new Counts(); // layouts of the tiles before d leading to this state
+        Counts backward; // layouts of the tiles from d on that complete this state
+        State child0;
+        State child1;
+
+        State(byte[] needs) {
+            this.needs = needs;
+        }
+    }
+
+    /**
+     * Frontier tiles connected through the numbers they share, with those numbers
+     */
+    private final class Component {
+        final int[] tiles; // in enumeration order: tiles[d] is decided at depth d
+        final int[][] tileConstraints; // constraints of each tile
+        final int[][] remaining; // for each constraint of each tile, the number of its tiles decided after this one
+        final int[] needs; // number of bombs around each constraint
+        final int[] sizes; // number of tiles around each constraint
+        final int[] first; // depth of the first tile of each constraint
+        final int[] last; // depth of the last tile of each constraint
+
+        boolean isExact;
+        Counts weights; // layouts by number of bombs
+        Counts[] tileWeights; // for each tile, layouts by number of bombs that have a bomb on it
+        double[] estimates;
+
+        Component(List<Integer> tileList) {
+            int nTiles = tileList.size();
+            tiles = orderTiles(tileList);
+
+            // the numbers around the component, with local indexes
+            HashMap<Integer, Integer> constraintIndexes = new HashMap<>();
+            List<Integer> constraintTiles = new ArrayList<>();
+            List<int[]> tileConstraintList = new ArrayList<>(nTiles);
+            for (int tile : tiles) {
+                int[] constraints = new int[8];
+                int count = 0;
+                int row = tile / sizeX;
+                int col = tile - row * sizeX;
+                for (int i = Math.max(row - 1, 0), lastRow = Math.min(row + 1, sizeY - 1); i <= lastRow; ++i) {
+                    for (int j = Math.max(col - 1, 0), lastCol = Math.min(col + 1, sizeX - 1); j <= lastCol; ++j) {
+                        int neighbour = i * sizeX + j;
+                        if (numbers[neighbour] >= 0) {
+                            Integer index = constraintIndexes.get(neighbour);
+                            if (index == null) {
+                                index = constraintTiles.size();
+                                constraintIndexes.put(neighbour, index);
+                                constraintTiles.add(neighbour);
+                            }
+                            constraints[count++] = index;
+                        }
+                    }
+                }
+                tileConstraintList.add(Arrays.copyOf(constraints, count));
+            }
+
+            int nConstraints = constraintTiles.size();
+            needs = new int[nConstraints];
+            sizes = new int[nConstraints];
+            first = new int[nConstraints];
+            last = new int[nConstraints];
+            Arrays.fill(first, -1);
+            int[] covered = new int[8];
+            for (int c = 0; c < nConstraints; ++c) {
+                int tile = constraintTiles.get(c);
+                needs[c] = numbers[tile] - visibleBombNeighbours(tile);
+                sizes[c] = coveredNeighbours(tile, covered);
+            }
+            tileConstraints = tileConstraintList.toArray(new int[0][]);
+            remaining = new int[nTiles][];
+            int[] seen = new int[nConstraints];
+            for (int d = 0; d < nTiles; ++d) {
+                remaining[d] = new int[tileConstraints[d].length];
+                for (int k = 0; k < tileConstraints[d].length; ++k) {
+                    int c = tileConstraints[d][k];
+                    if (first[c] < 0) {
+                        first[c] = d;
+                    }
+                    last[c] = d;
+                    remaining[d][k] = sizes[c] - ++seen[c];
+                }
+            }
+        }
+
+        /**
+         * Orders the tiles breadth-first through their shared numbers, from a tile with few numbers,
+         * which keeps few numbers open at every depth of the enumeration
+         */
+        private int[] orderTiles(List<Integer> tileList) {
+            HashMap<Integer, Boolean> isOrdered = new HashMap<>();
+            int start = tileList.get(0);
+            int startConstraints = Integer.MAX_VALUE;
+            for (int tile : tileList) {
+                int count = countNumberNeighbours(tile);
+                if (count < startConstraints) {
+                    start = tile;
+                    startConstraints = count;
+                }
+            }
+
+            int[] order = new int[tileList.size()];
+            int head = 0;
+            int tail = 0;
+            order[tail++] = start;
+            isOrdered.put(start, true);
+            int[] covered = new int[8];
+            while (head < tail) {
+                int tile = order[head++];
+                int row = tile / sizeX;
+                int col = tile - row * sizeX;
+                for (int i = Math.max(row - 1, 0), lastRow = Math.min(row + 1, sizeY - 1); i <= lastRow; ++i) {
+                    for (int j = Math.max(col - 1, 0), lastCol = Math.min(col + 1, sizeX - 1); j <= lastCol; ++j) {
+                        if (numbers[i * sizeX + j] < 0) continue;
+                        int nCovered = coveredNeighbours(i * sizeX + j, covered);
+                        for (int k = 0; k < nCovered; ++k) {
+                            if (isOrdered.putIfAbsent(covered[k], true) == null) {
+                                order[tail++] = covered[k];
+                            }
+                        }
+                    }
+                }
+            }
+            return order;
+        }
+
+        private int countNumberNeighbours(int tile) {
+            int count = 0;
+            int row = tile / sizeX;
+            int col = tile - row * sizeX;
+            for (int i = Math.max(row - 1, 0), lastRow = Math.min(row + 1, sizeY - 1); i <= lastRow; ++i) {
+                for (int j = Math.max(col - 1, 0), lastCol = Math.min(col + 1, sizeX - 1); j <= lastCol; ++j) {
+                    if (numbers[i * sizeX + j] >= 0) {
+                        ++count;
+                    }
+                }
+            }
+            return count;
+        }
+
+        private int visibleBombNeighbours(int tile) {
+            int count = 0;
+            int row = tile / sizeX;
+            int col = tile - row * sizeX;
+            for (int i = Math.max(row - 1, 0), lastRow = Math.min(row + 1, sizeY - 1); i <= lastRow; ++i) {
+                for (int j = Math.max(col - 1, 0), lastCol = Math.min(col + 1, sizeX - 1); j <= lastCol; ++j) {
+                    if (numbers[i * sizeX + j] == VISIBLE_BOMB) {
+                        ++count;
+                    }
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Counts the layouts of the component, in total and with a bomb on each tile, by number of bombs.
+         * A forward pass builds the states depth by depth, merging those whose open numbers need the same,
+         * and a backward pass counts the completions of every state
+         */
+        void enumerate(long deadline) {
+            int nTiles = tiles.length;
+            int nConstraints = needs.length;
+
+            // open[d]: constraints with tiles both before and from depth d, which make up the states at depth d
+            int[][] open = new int[nTiles + 1][];
+            for (int d = 0; d <= nTiles; ++d) {
+                int count = 0;
+                int[] constraints = new int[nConstraints];
+                for (int c = 0; c < nConstraints; ++c) {
+                    if (first[c] < d && last[c] >= d) {
+                        constraints[count++] = c;
+                    }
+                }
+                open[d] = Arrays.copyOf(constraints, count);
+            }
+
+            List<List<State>> levels = new ArrayList<>(nTiles + 1);
+            State root = new State(new byte[0]);
+            root.forward.addShifted(Counts.one(), 0);
+            levels.add(List.of(root));
+
+            int[] position = new int[nConstraints];
+            int[] touchedAt = new int[nConstraints];
+            Arrays.fill(touchedAt, -1);
+            int[] newNeeds = new int[nConstraints];
+            int nStates = 1;
+
+            for (int d = 0; d < nTiles; ++d) {
+                for (int k = 0; k < open[d].length; ++k) {
+                    position[open[d][k]] = k;
+                }
+                int[] constraints = tileConstraints[d];
+                for (int c : constraints) {
+                    touchedAt[c] = d;
+                }
+                HashMap<ByteBuffer, State> next = new HashMap<>();
+
+                for (State state : levels.get(d)) {
+                    for (int bomb = 0; bomb <= 1; ++bomb) {
+                        boolean isValid = true;
+                        for (int k = 0; k < constraints.length && isValid; ++k) {
+                            int c = constraints[k];
+                            int need = (first[c] == d ? needs[c] : state.needs[position[c]]) - bomb;
+                            newNeeds[c] = need;
+                            isValid = need >= 0 && need <= remaining[d][k];
+                        }
+                        if (!isValid) continue;
+
+                        byte[] childNeeds = new byte[open[d + 1].length];
+                        for (int k = 0; k < childNeeds.length; ++k) {
+                            int c = open[d + 1][k];
+                            childNeeds[k] = (byte) (touchedAt[c] == d ? newNeeds[c] : state.needs[position[c]]);
+                        }
+                        ByteBuffer key = ByteBuffer.wrap(childNeeds);
+                        State child = next.get(key);
+                        if (child == null) {
+                            child = new State(childNeeds);
+                            next.put(key, child);
+                            ++nStates;
+                        }
+                        if (bomb == 0) {
+                            state.child0 = child;
+                        }
+                        else {
+                            state.child1 = child;
+                        }
+                        child.forward.addShifted(state.forward, bomb);
+                    }
+                }
+                if (nStates > MAX_STATES || System.nanoTime() > deadline) {
+                    approximate();
+                    return;
+                }
+                levels.add(new ArrayList<>(next.values()));
+            }
+
+            if (levels.get(nTiles).isEmpty()) {
+                // the numbers contradict each other
+                approximate();
+                return;
+            }
+            levels.get(nTiles).get(0).backward = Counts.one();
+            tileWeights = new Counts[nTiles];
+            for (int d = nTiles - 1; d >= 0; --d) {
+                tileWeights[d] = new Counts();
+                for (State state : levels.get(d)) {
+                    state.backward = new Counts();
+                    if (state.child0 != null) {
+                        state.backward.addShifted(state.child0.backward, 0);
+                    }
+                    if (state.child1 != null) {
+                        state.backward.addShifted(state.child1.backward, 1);
+                        tileWeights[d].addProduct(state.forward, state.child1.backward, 1);
+                    }
+                }
+            }
+            weights = root.backward;
+
+            double max = weights.max();
+            weights.scale(1 / max);
+            for (Counts counts : tileWeights) {
+                counts.scale(1 / max);
+            }
+            isExact = true;
+        }
+
+        /**
+         * Estimates each tile from the ratios of bombs needed by its numbers, and the component as a single
+         * layout with the expected number of bombs
+         */
+        void approximate() {
+            int nTiles = tiles.length;
+            estimates = new double[nTiles];
+            double expectedBombs = 0;
+            for (int d = 0; d < nTiles; ++d) {
+                double sum = 0;
+                for (int c : tileConstraints[d]) {
+                    sum += (double) Math.max(0, Math.min(needs[c], sizes[c])) / sizes[c];
+                }
+                estimates[d] = sum / tileConstraints[d].length;
+                expectedBombs += estimates[d];
+            }
+
+            int bombs = (int) Math.round(expectedBombs);
+            weights = new Counts();
+            weights.low = bombs;
+            weights.values = new double[] {1};
+            tileWeights = new Counts[nTiles];
+            for (int d = 0; d < nTiles; ++d) {
+                tileWeights[d] = new Counts();
+                tileWeights[d].low = bombs;
+                tileWeights[d].values = new double[] {estimates[d]};
+            }
+            isExact = false;
+        }
+    }
+}
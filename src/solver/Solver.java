@@ -0,0 +1,381 @@
+package solver;
+
+import interfaces.IBoard;
+import interfaces.IBoardListener;
+
+import java.util.Arrays;
+
+/**
+ * Deterministic solver working from what the player sees: the revealed tiles, their numbers and, optionally, the flags.
+ * It finds the covered tiles that are certainly safe or certainly bombs, with two rules:
+ * - single point: a number whose missing bombs are none, or all of its unknown neighbours, settles all of them
+ * - pairwise: two overlapping numbers bound the bombs of their intersection, which may settle the tiles outside it
+ * The solver listens to the board and only re-examines the numbers around the tiles that changed,
+ * so the work done after a move is proportional to what the move revealed.
+ * Tiles are packed indexes (i * sizeX + j), like in IBoard.
+ */
+public class Solver implements IBoardListener {
+
+    // what is known about a tile
+    private static final byte UNKNOWN = 0;
+    private static final byte SAFE = 1;     // covered, and certainly not a bomb
+    private static final byte MINE = 2;     // covered, and certainly a bomb, or flagged when flags are trusted
+    private static final byte REVEALED = 3;
+
+    private final IBoard board;
+    private final boolean trustFlags;
+
+    private int sizeX;
+    private int sizeY;
+    private byte[] knowledge;
+    private byte[] numbers; // close bomb count of the revealed tiles
+
+    // numbers to examine, as a circular queue: a tile is queued at most once at a time
+    private int[] worklist;
+    private boolean[] isQueued;
+    private int head;
+    private int nQueued;
+
+    // tiles found safe, in the order they were found. Each tile is found safe at most once per layout
+    private int[] safeTiles;
+    private int safeHead;
+    private int nSafeTiles;
+    private int nMines;
+
+    // unknown neighbours of the two numbers being compared
+    private final int[] unknownA = new int[8];
+    private final int[] unknownB = new int[8];
+
+    /**
+     * Attaches a solver to the board. Flags are ignored, since a player's flags may be wrong.
+     */
+    public Solver(IBoard board) {
+        this(board, false);
+    }
+
+    /**
+     * @param trustFlags whether flagged tiles count as bombs, for players and bots that only flag certain bombs
+     */
+    public Solver(IBoard board, boolean trustFlags) {
+        this.board = board;
+        this.trustFlags = trustFlags;
+        rebuild();
+        board.addListener(this);
+    }
+
+    /**
+     * Stops following the board
+     */
+    public void detach() {
+        board.removeListener(this);
+    }
+
+    /**
+     * @return a covered tile that is certainly safe, or -1 if there is none. The tile stays the answer until it is revealed
+     */
+    public int getSafeTile() {
+        while (safeHead < nSafeTiles && knowledge[safeTiles[safeHead]] == REVEALED) {
+            ++safeHead;
+        }
+        return safeHead < nSafeTiles ? safeTiles[safeHead] : -1;
+    }
+
+    /**
+     * @return whether the tile is covered and certainly safe
+     */
+    public boolean isSafe(int i, int j) {
+        return knowledge[i * sizeX + j] == SAFE;
+    }
+
+    /**
+     * @return whether the tile is certainly a bomb
+     */
+    public boolean isMine(int i, int j) {
+        return knowledge[i * sizeX + j] == MINE;
+    }
+
+    /**
+     * @return the number of tiles known to be bombs
+     */
+    public int nKnownMines() {
+        return nMines;
+    }
+
+    @Override
+    public void tilesRevealed(int[] tiles, int count) {
+        boolean isConsistent = true;
+        for (int k = 0; k < count; ++k) {
+            int tile = tiles[k];
+            if (board.isBomb(tile)) {
+                // the game is lost: the tile is a bomb, and nothing else follows from it
+                setMine(tile);
+                continue;
+            }
+            byte before = knowledge[tile];
+            isConsistent &= before != MINE; // only a wrong flag can be revealed safe
+            knowledge[tile] = REVEALED;
+            numbers[tile] = (byte) board.getnCloseBombs(tile);
+            if (numbers[tile] > 0) {
+                enqueue(tile);
+            }
+            if (before == UNKNOWN) {
+                enqueueNeighbours(tile);
+            }
+        }
+        if (isConsistent) {
+            propagate();
+        }
+        else {
+            rebuild();
+        }
+    }
+
+    @Override
+    public void flagToggled(int tile) {
+        if (!trustFlags || knowledge[tile] == REVEALED) return;
+
+        if (board.hasFlag(tile)) {
+            if (knowledge[tile] == UNKNOWN) {
+                setMine(tile);
+                propagate();
+            }
+        }
+        else if (knowledge[tile] == MINE) {
+            // what followed from the flag no longer holds
+            rebuild();
+        }
+    }
+
+    /**
+     * What was deduced from the covered tiles no longer holds
+     */
+    @Override
+    public void tilesCovered(int[] tiles, int count) {
+        rebuild();
+    }
+
+    @Override
+    public void boardRegenerated() {
+        rebuild();
+    }
+
+    /**
+     * Starts over from the whole visible board
+     */
+    private void rebuild() {
+        sizeX = board.getSizeX();
+        sizeY = board.getSizeY();
+        int nTiles = sizeX * sizeY;
+        if (knowledge == null || knowledge.length < nTiles) {
+            knowledge = new byte[nTiles];
+            numbers = new byte[nTiles];
+            worklist = new int[nTiles];
+            isQueued = new boolean[nTiles];
+            safeTiles = new int[nTiles];
+        }
+        else {
+            Arrays.fill(knowledge, 0, nTiles, UNKNOWN);
+            Arrays.fill(isQueued, 0, nTiles, false);
+        }
+        head = 0;
+        nQueued = 0;
+        safeHead = 0;
+        nSafeTiles = 0;
+        nMines = 0;
+
+        for (int tile = 0; tile < nTiles; ++tile) {
+            if (board.isVisible(tile)) {
+                if (board.isBomb(tile)) {
+                    knowledge[tile] = MINE;
+                    ++nMines;
+                }
+                else {
+                    knowledge[tile] = REVEALED;
+                    numbers[tile] = (byte) board.getnCloseBombs(tile);
+                    if (numbers[tile] > 0) {
+                        enqueue(tile);
+                    }
+                }
+            }
+            else if (trustFlags && board.hasFlag(tile)) {
+                knowledge[tile] = MINE;
+                ++nMines;
+            }
+        }
+        propagate();
+    }
+
+    private void propagate() {
+        while (nQueued > 0) {
+            int tile = worklist[head];
+            head = head + 1 == worklist.length ? 0 : head + 1;
+            --nQueued;
+            isQueued[tile] = false;
+            examine(tile);
+        }
+    }
+
+    /**
+     * Applies the single point rule to a number, then the pairwise rule to it and each number within two tiles of it
+     */
+    private void examine(int a) {
+        int nUnknownA = collectUnknown(a, unknownA);
+        if (nUnknownA == 0) return;
+        int missingA = numbers[a] - countMines(a);
+
+        if (missingA == 0) {
+            setSafe(unknownA, nUnknownA, -1, false);
+            return;
+        }
+        if (missingA == nUnknownA) {
+            setMines(unknownA, nUnknownA, -1, false);
+            return;
+        }
+
+        int rowA = a / sizeX;
+        int colA = a - rowA * sizeX;
+        for (int i = Math.max(rowA - 2, 0), lastRow = Math.min(rowA + 2, sizeY - 1); i <= lastRow; ++i) {
+            for (int j = Math.max(colA - 2, 0), lastCol = Math.min(colA + 2, sizeX - 1); j <= lastCol; ++j) {
+                int b = i * sizeX + j;
+                if (b == a || knowledge[b] != REVEALED || numbers[b] == 0) continue;
+
+                int nUnknownB = collectUnknown(b, unknownB);
+                if (nUnknownB == 0) continue;
+                int nShared = 0;
+                for (int k = 0; k < nUnknownA; ++k) {
+                    if (isNeighbour(unknownA[k], b)) {
+                        ++nShared;
+                    }
+                }
+                if (nShared == 0) continue;
+
+                int missingB = numbers[b] - countMines(b);
+                int nOnlyA = nUnknownA - nShared;
+                int nOnlyB = nUnknownB - nShared;
+                // bounds on the bombs of the intersection
+                int maxShared = Math.min(nShared, Math.min(missingA, missingB));
+                int minShared = Math.max(0, Math.max(missingA - nOnlyA, missingB - nOnlyB));
+
+                boolean isSettled = false;
+                if (nOnlyB > 0 && missingB - minShared == 0) {
+                    isSettled = setSafe(unknownB, nUnknownB, a, true);
+                }
+                else if (nOnlyB > 0 && missingB - maxShared == nOnlyB) {
+                    isSettled = setMines(unknownB, nUnknownB, a, true);
+                }
+                if (nOnlyA > 0 && missingA - minShared == 0) {
+                    isSettled |= setSafe(unknownA, nUnknownA, b, true);
+                }
+                else if (nOnlyA > 0 && missingA - maxShared == nOnlyA) {
+                    isSettled |= setMines(unknownA, nUnknownA, b, true);
+                }
+                if (isSettled) {
+                    // the unknown neighbours of a may have changed: examine it again with the new state
+                    enqueue(a);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks safe the given tiles, or only those that are not neighbours of other when exclusive is set
+     * @return whether any tile was marked
+     */
+    private boolean setSafe(int[] tiles, int count, int other, boolean exclusive) {
+        boolean isSet = false;
+        for (int k = 0; k < count; ++k) {
+            int tile = tiles[k];
+            if (exclusive && isNeighbour(tile, other)) continue;
+            knowledge[tile] = SAFE;
+            safeTiles[nSafeTiles++] = tile;
+            enqueueNeighbours(tile);
+            isSet = true;
+        }
+        return isSet;
+    }
+
+    /**
+     * Marks as bombs the given tiles, or only those that are not neighbours of other when exclusive is set
+     * @return whether any tile was marked
+     */
+    private boolean setMines(int[] tiles, int count, int other, boolean exclusive) {
+        boolean isSet = false;
+        for (int k = 0; k < count; ++k) {
+            int tile = tiles[k];
+            if (exclusive && isNeighbour(tile, other)) continue;
+            setMine(tile);
+            isSet = true;
+        }
+        return isSet;
+    }
+
+    private void setMine(int tile) {
+        if (knowledge[tile] != MINE) {
+            knowledge[tile] = MINE;
+            ++nMines;
+            enqueueNeighbours(tile);
+        }
+    }
+
+    /**
+     * @return the number of unknown neighbours of the tile, stored in unknown
+     */
+    private int collectUnknown(int tile, int[] unknown) {
+        int count = 0;
+        int row = tile / sizeX;
+        int col = tile - row * sizeX;
+        for (int i = Math.max(row - 1, 0), lastRow = Math.min(row + 1, sizeY - 1); i <= lastRow; ++i) {
+            for (int j = Math.max(col - 1, 0), lastCol = Math.min(col + 1, sizeX - 1); j <= lastCol; ++j) {
+                if (knowledge[i * sizeX + j] == UNKNOWN) {
+                    unknown[count++] = i * sizeX + j;
+                }
+            }
+        }
+        return count;
+    }
+
+    private int countMines(int tile) {
+        int count = 0;
+        int row = tile / sizeX;
+        int col = tile - row * sizeX;
+        for (int i = Math.max(row - 1, 0), lastRow = Math.min(row + 1, sizeY - 1); i <= lastRow; ++i) {
+            for (int j = Math.max(col - 1, 0), lastCol = Math.min(col + 1, sizeX - 1); j <= lastCol; ++j) {
+                if (knowledge[i * sizeX + j] == MINE) {
+                    ++count;
+                }
+            }
+        }
+        return count;
+    }
+
+    private boolean isNeighbour(int tile, int other) {
+        int rowDistance = tile / sizeX - other / sizeX;
+        int colDistance = tile % sizeX - other % sizeX;
+        return rowDistance >= -1 && rowDistance <= 1 && colDistance >= -1 && colDistance <= 1;
+    }
+
+    /**
+     * Queues the revealed numbers around the tile, whose unknown neighbours changed
+     */
+    private void enqueueNeighbours(int tile) {
+        int row = tile / sizeX;
+        int col = tile - row * sizeX;
+        for (int i = Math.max(row - 1, 0), lastRow = Math.min(row + 1, sizeY - 1); i <= lastRow; ++i) {
+            for (int j = Math.max(col - 1, 0), lastCol = Math.min(col + 1, sizeX - 1); j <= lastCol; ++j) {
+                int neighbour = i * sizeX + j;
+                if (knowledge[neighbour] == REVEALED && numbers[neighbour] > 0) {
+                    enqueue(neighbour);
+                }
+            }
+        }
+    }
+
+    private void enqueue(int tile) {
+        if (isQueued[tile]) return;
+        isQueued[tile] = true;
+        int tail = head + nQueued;
+        worklist[tail >= worklist.length ? tail - worklist.length : tail] = tile;
+        ++nQueued;
+    }
+}
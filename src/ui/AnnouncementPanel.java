@@ -1,6 +1,5 @@
 package ui;
 
-import domain.Board;
 import domain.Game;
 import interfaces.IBoard;
 import interfaces.IGame;
@@ -26,6 +25,7 @@ class AnnouncementPanel extends JPanel implements MouseListener {
 
     private String gameStateString;
     private String gameResultString;
+    private boolean isFlagButtonEnabled;
 
     private JButton flagButton;
 
@@ -36,11 +36,11 @@ class AnnouncementPanel extends JPanel implements MouseListener {
     private IBoard board;
     private IGame game;
 
-    AnnouncementPanel(MainGUI mainGUI, IManager manager) {
+    AnnouncementPanel(MainGUI mainGUI, IManager manager, IBoard board, IGame game) {
 
         this.manager = manager;
-        this.board = Board.getInstance();
-        this.game = Game.getInstance();
+        this.board = board;
+        this.game = game;
 
         setLayout(null);
         setBorder(BorderFactory.createBevelBorder(BevelBorder.RAISED));
@@ -81,7 +81,7 @@ class AnnouncementPanel extends JPanel implements MouseListener {
         gameStateLabel.setText(gameStateString);
         gameResultLabel.setText(gameResultString);
 
-        flagButton.setEnabled(game.getState() == IGame.State.PLAYING || game.getState() == Game.State.PLACING_FLAGS);
+        flagButton.setEnabled(isFlagButtonEnabled);
 
         g.setColor(new JButton().getBackground());
         g.fillRect(0, 0, ANNOUNCEMENT_PANEL_WIDTH, ANNOUNCEMENT_PANEL_HEIGHT);
@@ -135,10 +135,15 @@ class AnnouncementPanel extends JPanel implements MouseListener {
         this.gameResultString = gameResultString;
     }
 
+    /**
+     * Reads the game state. Called with the read lock held, or before the game engine runs.
+     */
     void setGameStateString() {
+        isFlagButtonEnabled = game.getState() == IGame.State.PLAYING || game.getState() == Game.State.PLACING_FLAGS;
         gameStateString = "<html>LEVEL &nbsp;&nbsp&nbsp;&nbsp&nbsp;: " + manager.getCurrentLevel() + "/" + manager.getWinLevel() + "<br>" +
                 "BOMBS &nbsp;&nbsp&nbsp;&nbsp&nbsp;: " + manager.getnBombs() + "<br>" +
-                "TILES LEFT : " + board.nTilesToUncover() + "</html>";
+                // an unbounded game always has tiles left
+                "TILES LEFT : " + (manager.canScroll() ? "&infin;" : Integer.toString(board.nTilesToUncover())) + "</html>";
     }
 }
 
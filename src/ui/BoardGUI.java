@@ -3,17 +3,29 @@ package ui;
 import domain.Game;
 import domain.Manager;
 import interfaces.IBoard;
-import interfaces.ICell;
+import interfaces.IBoardListener;
 import interfaces.IGame;
+import interfaces.IGameListener;
 
 import javax.swing.*;
 import javax.swing.border.BevelBorder;
 import java.awt.*;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.locks.Lock;
 
 
-class BoardGUI extends JPanel implements MouseListener {
+/**
+ * Paints the board. Repaints are driven by the board and game change events, and are limited to the changed tiles when possible.
+ * The events come from the game engine thread: they only mark tiles to repaint, and flush() repaints them at the next refresh.
+ * Painting never waits for the game engine: while it holds the lock, the last frame painted is shown instead.
+ * The board sits in a scroll pane and can be zoomed with the mouse wheel while holding Ctrl. Only the tiles in view are painted.
+ */
+class BoardGUI extends JPanel implements MouseListener, MouseWheelListener, IBoardListener, IGameListener {
 
     private static final int SMALL_GRID_SPACING = 2;
     private static final int MEDIUM_GRID_SPACING = 1;
@@ -22,26 +34,72 @@ class BoardGUI extends JPanel implements MouseListener {
     private static final int MEDIUM_GRID_CELL_SIZE = 36;
     private static final int LARGE_GRID_CELL_SIZE = 28;
 
+    private static final int MAX_CELL_SIZE = 64;
+    private static final int MIN_SPACED_CELL_SIZE = 40; // from this size on, tiles are 2 spacings apart
+    private static final int MIN_SPRITE_CELL_SIZE = 8;  // below this size, tiles are painted as plain colours
+
+    // tile sprites, each one pre-rendered once per cell size
+    private static final int COVERED_SPRITE = 0;
+    private static final int QUESTION_MARK_SPRITE = 1;
+    private static final int FLAG_SPRITE = 2;
+    private static final int EMPTY_SPRITE = 3;
+    private static final int LOST_BOMB_SPRITE = 4;    // the bomb that was revealed
+    private static final int WON_BOMB_SPRITE = 5;
+    private static final int MISSED_BOMB_SPRITE = 6;  // a covered bomb, once the game is lost
+    private static final int WON_FLAG_SPRITE = 7;     // a covered bomb, once the game is won
+    private static final int FIRST_NUMBER_SPRITE = 8; // followed by the sprites for 2 to 8 close bombs
+    private static final int N_SPRITES = FIRST_NUMBER_SPRITE + 8;
+
+    /**
+     * colour of each sprite, for boards zoomed out too far to show sprites
+     */
+    private static final int[] LOD_COLORS = {
+            Color.gray.getRGB(), Color.gray.getRGB(), Color.red.darker().getRGB(), Color.lightGray.getRGB(),
+            Color.red.getRGB(), Color.green.getRGB(), Color.orange.getRGB(), Color.green.getRGB(),
+            0xFFFFFF80, 0xFFFFFF40, 0xFFFFFF00, 0xFFE0E000, 0xFFC0C000, 0xFFA0A000, 0xFF808000, 0xFF606000
+    };
+
     private int spacing;
     private int boardSizeX;
     private int boardSizeY;
     private int cellSize;
     private int gridHeight;
     private int gridWidth;
+    private Image[] sprites;
+    private BufferedImage lodImage; // one pixel per tile, only used when tiles are smaller than MIN_SPRITE_CELL_SIZE
+    private int[] lodPixels;
+    private boolean isLodStale;
+
+    // tiles changed since the last flush, written by the game engine thread with the write lock held.
+    // Each region is a box of tiles: firstI, lastI, firstJ, lastJ. A tile joins a region it lies near, or starts one
+    private static final int MAX_DIRTY_REGIONS = 16;
+    private static final int DIRTY_MERGE_DISTANCE = 2; // tiles between two regions painted as one
+    private final int[] dirtyRegions = new int[4 * MAX_DIRTY_REGIONS];
+    private int nDirtyRegions;
+    private boolean isAllDirty;
+
+    // the tiles in view as last painted, shown while the game engine holds the lock
+    private BufferedImage frame;
+    private final Rectangle frameRect = new Rectangle();
+    private Rectangle lateRect; // painted while the game engine held the lock, outside the frame, or null
 
     private MainGUI mainGUI;
+    private GameEngine engine;
     private IBoard board;
     private IGame game;
 
 
 
-    BoardGUI(MainGUI mainGui, IBoard board, IGame game) {
+    BoardGUI(MainGUI mainGui, GameEngine engine, IBoard board, IGame game) {
 
         this.mainGUI = mainGui;
+        this.engine = engine;
         this.board = board;
         this.game = game;
-        setBorder(BorderFactory.createBevelBorder(BevelBorder.RAISED));
         addMouseListener(this);
+        addMouseWheelListener(this);
+        board.addListener(this);
+        game.addListener(this);
 
         setDimensions();
 
@@ -56,24 +114,56 @@ class BoardGUI extends JPanel implements MouseListener {
         return gridWidth;
     }
 
+    /**
+     * @return the number of columns shown, which lags behind the board's until setDimensions() runs
+     */
+    int getBoardSizeX() {
+        return boardSizeX;
+    }
+
+    int getBoardSizeY() {
+        return boardSizeY;
+    }
+
+    /**
+     * Sets the cell size for the board size: the fixed ones have their own, other boards are fitted to the board area.
+     * The caller holds the read lock, and places the board again afterwards.
+     */
     void setDimensions() {
         boardSizeX = board.getSizeX();
         boardSizeY = board.getSizeY();
 
-        switch (boardSizeX) {
-            case Manager.SMALL_GRID_SIZE_X:
-                spacing = SMALL_GRID_SPACING;
-                cellSize = SMALL_GRID_CELL_SIZE;
-                break;
-            case Manager.MEDIUM_GRID_SIZE_X:
-                spacing = MEDIUM_GRID_SPACING;
-                cellSize = MEDIUM_GRID_CELL_SIZE;
-                break;
-            case Manager.LARGE_GRID_SIZE_X:
-                spacing = LARGE_GRID_SPACING;
-                cellSize = LARGE_GRID_CELL_SIZE;
-                break;
+        if (boardSizeX == Manager.SMALL_GRID_SIZE_X && boardSizeY == Manager.SMALL_GRID_SIZE_Y) {
+            spacing = SMALL_GRID_SPACING;
+            cellSize = SMALL_GRID_CELL_SIZE;
         }
+        else if (boardSizeX == Manager.MEDIUM_GRID_SIZE_X && boardSizeY == Manager.MEDIUM_GRID_SIZE_Y) {
+            spacing = MEDIUM_GRID_SPACING;
+            cellSize = MEDIUM_GRID_CELL_SIZE;
+        }
+        else if (boardSizeX == Manager.LARGE_GRID_SIZE_X && boardSizeY == Manager.LARGE_GRID_SIZE_Y) {
+            spacing = LARGE_GRID_SPACING;
+            cellSize = LARGE_GRID_CELL_SIZE;
+        }
+        else {
+            cellSize = Math.min(MainGUI.BOARD_AREA_WIDTH / boardSizeX, MainGUI.BOARD_AREA_HEIGHT / boardSizeY);
+            cellSize = Math.max(Math.min(cellSize, SMALL_GRID_CELL_SIZE), 1);
+            spacing = getSpacing(cellSize);
+            // the border takes room too
+            while (cellSize > 1 && (boardSizeX * cellSize + 6 * spacing > MainGUI.BOARD_AREA_WIDTH
+                    || boardSizeY * cellSize + 6 * spacing > MainGUI.BOARD_AREA_HEIGHT)) {
+                spacing = getSpacing(--cellSize);
+            }
+        }
+
+        layoutGrid();
+    }
+
+    private static int getSpacing(int cellSize) {
+        return cellSize >= MIN_SPACED_CELL_SIZE ? 2 : cellSize >= MIN_SPRITE_CELL_SIZE ? 1 : 0;
+    }
+
+    private void layoutGrid() {
 
         // each cell is padded by 1 spacing on the left and the right
         // 1 extra spacing is added on the left-most cell and right-most cell for evenness.
@@ -81,113 +171,299 @@ class BoardGUI extends JPanel implements MouseListener {
         gridHeight = boardSizeY * cellSize + 6 * spacing;
         gridWidth = boardSizeX * cellSize + 6 * spacing;
 
-        setBounds((MainGUI.PANEL_WIDTH - gridWidth) / 2, (MainGUI.PANEL_HEIGHT - gridHeight) * 6 / 9, gridWidth, gridHeight);
+        if (cellSize >= MIN_SPRITE_CELL_SIZE) {
+            buildSprites();
+            lodImage = null;
+            lodPixels = null;
+            setBorder(BorderFactory.createBevelBorder(BevelBorder.RAISED));
+        }
+        else {
+            sprites = null;
+            if (lodImage == null || lodImage.getWidth() != boardSizeX || lodImage.getHeight() != boardSizeY) {
+                lodImage = new BufferedImage(boardSizeX, boardSizeY, BufferedImage.TYPE_INT_RGB);
+                lodPixels = ((DataBufferInt) lodImage.getRaster().getDataBuffer()).getData();
+            }
+            isLodStale = true;
+            setBorder(null); // there is no border area for it to be drawn on
+        }
+
+        setPreferredSize(new Dimension(gridWidth, gridHeight));
+        setSize(gridWidth, gridHeight);
+        revalidate();
+        repaint();
     }
 
     public void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, gridWidth, gridHeight);
+        }
+        Lock readLock = engine.getReadLock();
+        if (!readLock.tryLock()) {
+            paintLastFrame(g, clip);
+            return;
+        }
+        try {
+            Rectangle view = getVisibleRect();
+            if (view.isEmpty() || !view.contains(clip)) {
+                paintGrid(g);
+                return;
+            }
+            // the frame is painted whole when the view moves, and only within the clip otherwise
+            Rectangle painted = clip;
+            if (frame == null || !frameRect.equals(view)) {
+                if (frame == null || frame.getWidth() != view.width || frame.getHeight() != view.height) {
+                    GraphicsConfiguration configuration = getGraphicsConfiguration();
+                    frame = configuration != null ?
+                            configuration.createCompatibleImage(view.width, view.height) :
+                            new BufferedImage(view.width, view.height, BufferedImage.TYPE_INT_RGB);
+                }
+                frameRect.setBounds(view);
+                painted = view;
+            }
+            Graphics frameGraphics = frame.createGraphics();
+            frameGraphics.translate(-view.x, -view.y);
+            frameGraphics.clipRect(painted.x, painted.y, painted.width, painted.height);
+            paintGrid(frameGraphics);
+            frameGraphics.dispose();
+            g.drawImage(frame, view.x, view.y, null);
+        }
+        finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Shows the tiles as last painted, while the game engine holds the lock.
+     * What the frame does not cover is left black, and painted by the next flush, which follows the running command.
+     */
+    private void paintLastFrame(Graphics g, Rectangle clip) {
+        if (frame == null || !frameRect.contains(clip)) {
+            g.setColor(Color.black);
+            g.fillRect(clip.x, clip.y, clip.width, clip.height);
+            lateRect = lateRect == null ? new Rectangle(clip) : lateRect.union(clip);
+        }
+        if (frame != null) {
+            g.drawImage(frame, frameRect.x, frameRect.y, null);
+        }
+    }
+
+    private void paintGrid(Graphics g) {
+
+        // only the tiles within the clip are painted
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, gridWidth, gridHeight);
+        }
 
-        g.setColor(Color.black);
-        g.fillRect(0, 0, gridWidth, gridHeight);
         int startX = 3 * spacing;
         int startY = 3 * spacing;
 
+        // sprites cover whole cells, gaps included, so only the border around the tiles is left to fill
+        g.setColor(Color.black);
+        g.fillRect(0, 0, gridWidth, startY);
+        g.fillRect(0, gridHeight - startY, gridWidth, startY);
+        g.fillRect(0, startY, startX, gridHeight - 2 * startY);
+        g.fillRect(gridWidth - startX, startY, startX, gridHeight - 2 * startY);
+
+        if (board.getSizeX() != boardSizeX || board.getSizeY() != boardSizeY) return; // the new size is not laid out yet
+
+        int firstI = Math.max(getIfromY(clip.y), 0);
+        int lastI = Math.min(getIfromY(clip.y + clip.height - 1), boardSizeY - 1);
+        int firstJ = Math.max(getJfromX(clip.x), 0);
+        int lastJ = Math.min(getJfromX(clip.x + clip.width - 1), boardSizeX - 1);
+
+        Game.State gameState = game.getState();
+
+        if (lodImage != null) {
+            if (isLodStale) {
+                updateLodImage(gameState);
+            }
+            // spacing is 0 at this level of detail
+            g.drawImage(
+                    lodImage,
+                    firstJ * cellSize, firstI * cellSize, (lastJ + 1) * cellSize, (lastI + 1) * cellSize,
+                    firstJ, firstI, lastJ + 1, lastI + 1,
+                    null
+            );
+            return;
+        }
+
         // i's correspond to Y coordinates
-        boolean raised;
-        boolean drawBomb;
-        boolean drawFlag;
-        for (int i = 0; i < boardSizeY; ++i) {
-            for (int j = 0; j < boardSizeX; ++j) {
-
-                raised = false;
-                drawBomb = false;
-                drawFlag = false;
-
-                ICell cell = board.getCell(i, j);
-                String str = "";
-                Game.State gameState = game.getState();
-
-                if (cell.isVisible()) {
-                    if (cell.isBomb()) {
-                        if (gameState == Game.State.WON) {
-                            g.setColor(Color.green);
-                        }
-                        else { g.setColor(Color.red); }
-
-                        drawBomb = true;
-                    }
-                    else if (cell.getnCloseBombs() > 0) {
-                        g.setColor(Color.yellow);
-                        str = Integer.toString(cell.getnCloseBombs());
-                    }
-                    else {
-                        g.setColor(Color.lightGray);
-                    }
-                }
-                else { //if (!cell.isVisible() {
-                    if (cell.isBomb() && gameState == Game.State.WON) {
-                        g.setColor(Color.GREEN);
-                        drawFlag = true;
-                    }
-                    else if (cell.isBomb() && gameState == Game.State.LOST) {
-                        g.setColor(Color.orange);
-                        drawBomb = true;
-                    }
-                    else {
-                        g.setColor(Color.gray);
-                        raised = true;
-
-                        if (gameState == Game.State.PLACING_FLAGS && !cell.hasFlag()) {
-                            str = "?";
-                        }
-                        else if (cell.hasFlag()) {
-                            drawFlag = true;
-                        }
-                    }
-                }
+        for (int i = firstI; i <= lastI; ++i) {
+            for (int j = firstJ; j <= lastJ; ++j) {
+                g.drawImage(
+                        sprites[getSprite(board, i * boardSizeX + j, gameState)],
+                        startX + j * cellSize,
+                        startY + i * cellSize,
+                        null
+                );
+            }
+        }
+    }
 
-                int paintStartX = startX + spacing + j * cellSize;
-                int paintStartY = startY + spacing + i * cellSize;
-
-                if (raised) {
-                    g.fill3DRect(
-                            paintStartX,
-                            paintStartY,
-                            cellSize - 2 * spacing,
-                            cellSize - 2 * spacing,
-                            true
-                    );
-                }
-                else {
-                    g.fillRect(
-                            paintStartX,
-                            paintStartY,
-                            cellSize - 2 * spacing,
-                            cellSize - 2 * spacing
-                    );
+    private void updateLodImage(Game.State gameState) {
+        updateLodPixels(0, boardSizeY - 1, 0, boardSizeX - 1, gameState);
+        isLodStale = false;
+    }
 
-                }
-                if (!str.isBlank()) {
-                    g.setColor(Color.BLACK);
-                    g.setFont(new Font("Monospace", Font.BOLD, cellSize*4 / 9 ));
-                    g.drawString(
-                            str,
-                            startX + spacing + j * cellSize + cellSize / 3,
-                            startY + spacing + i * cellSize + cellSize * 15 / 24
-                    );
-                }
+    private void updateLodPixels(int firstI, int lastI, int firstJ, int lastJ, Game.State gameState) {
+        for (int i = firstI; i <= lastI; ++i) {
+            for (int j = firstJ; j <= lastJ; ++j) {
+                lodPixels[i * boardSizeX + j] = LOD_COLORS[getSprite(board, i * boardSizeX + j, gameState)];
+            }
+        }
+    }
 
-                else if (drawBomb) {
-                    paintBomb(g, paintStartX, paintStartY);
-                }
-                else if (drawFlag) {
-                    paintFlag(g, paintStartX, paintStartY);
-                }
+    /**
+     * @return the sprite showing the tile in the given game state
+     */
+    private static int getSprite(IBoard board, int tile, Game.State gameState) {
 
+        if (board.isVisible(tile)) {
+            if (board.isBomb(tile)) {
+                return gameState == Game.State.WON ? WON_BOMB_SPRITE : LOST_BOMB_SPRITE;
+            }
+            else if (board.getnCloseBombs(tile) > 0) {
+                return FIRST_NUMBER_SPRITE + board.getnCloseBombs(tile) - 1;
+            }
+            else {
+                return EMPTY_SPRITE;
+            }
+        }
+        else { //if (!board.isVisible(tile) {
+            if (board.isBomb(tile) && gameState == Game.State.WON) {
+                return WON_FLAG_SPRITE;
+            }
+            else if (board.isBomb(tile) && gameState == Game.State.LOST) {
+                return MISSED_BOMB_SPRITE;
+            }
+            else if (gameState == Game.State.PLACING_FLAGS && !board.hasFlag(tile)) {
+                return QUESTION_MARK_SPRITE;
+            }
+            else if (board.hasFlag(tile)) {
+                return FLAG_SPRITE;
+            }
+            else {
+                return COVERED_SPRITE;
             }
         }
     }
 
-    private void paintBomb(Graphics g, int x, int y) {
+    /**
+     * Rasterizes every tile sprite for the current cell size, into images compatible with the screen when there is one.
+     * A sprite covers a whole cell: the tile and the black gap of one spacing around it.
+     * Sprites are drawn at the cell size of one of the fixed boards, and scaled for the cell sizes of zoomed boards.
+     */
+    private void buildSprites() {
+
+        int drawnCellSize = cellSize;
+        int drawnSpacing = spacing;
+        if (!(cellSize == SMALL_GRID_CELL_SIZE && spacing == SMALL_GRID_SPACING
+                || cellSize == MEDIUM_GRID_CELL_SIZE && spacing == MEDIUM_GRID_SPACING
+                || cellSize == LARGE_GRID_CELL_SIZE && spacing == LARGE_GRID_SPACING)) {
+            drawnCellSize = cellSize > MEDIUM_GRID_CELL_SIZE ? SMALL_GRID_CELL_SIZE : MEDIUM_GRID_CELL_SIZE;
+            drawnSpacing = cellSize > MEDIUM_GRID_CELL_SIZE ? SMALL_GRID_SPACING : MEDIUM_GRID_SPACING;
+        }
+
+        GraphicsConfiguration configuration = GraphicsEnvironment.isHeadless() ? null :
+                GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+
+        sprites = new Image[N_SPRITES];
+        for (int sprite = 0; sprite < N_SPRITES; ++sprite) {
+            BufferedImage image = createTileImage(configuration, drawnCellSize);
+            Graphics g = image.createGraphics();
+            g.setColor(Color.black);
+            g.fillRect(0, 0, drawnCellSize, drawnCellSize);
+            g.translate(drawnSpacing, drawnSpacing);
+            g.setClip(0, 0, drawnCellSize - 2 * drawnSpacing, drawnCellSize - 2 * drawnSpacing);
+            paintSprite(g, sprite, drawnCellSize, drawnSpacing);
+            g.dispose();
+
+            if (drawnCellSize != cellSize) {
+                BufferedImage scaled = createTileImage(configuration, cellSize);
+                Graphics2D g2 = scaled.createGraphics();
+                g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g2.drawImage(image, 0, 0, cellSize, cellSize, null);
+                g2.dispose();
+                image = scaled;
+            }
+            sprites[sprite] = image;
+        }
+    }
+
+    private static BufferedImage createTileImage(GraphicsConfiguration configuration, int size) {
+        return configuration != null ?
+                configuration.createCompatibleImage(size, size) :
+                new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+    }
+
+    private void paintSprite(Graphics g, int sprite, int cellSize, int spacing) {
+
+        boolean raised = false;
+        boolean drawBomb = false;
+        boolean drawFlag = false;
+        String str = "";
+
+        switch (sprite) {
+            case COVERED_SPRITE:
+                g.setColor(Color.gray);
+                raised = true;
+                break;
+            case QUESTION_MARK_SPRITE:
+                g.setColor(Color.gray);
+                raised = true;
+                str = "?";
+                break;
+            case FLAG_SPRITE:
+                g.setColor(Color.gray);
+                raised = true;
+                drawFlag = true;
+                break;
+            case EMPTY_SPRITE:
+                g.setColor(Color.lightGray);
+                break;
+            case LOST_BOMB_SPRITE:
+                g.setColor(Color.red);
+                drawBomb = true;
+                break;
+            case WON_BOMB_SPRITE:
+                g.setColor(Color.green);
+                drawBomb = true;
+                break;
+            case MISSED_BOMB_SPRITE:
+                g.setColor(Color.orange);
+                drawBomb = true;
+                break;
+            case WON_FLAG_SPRITE:
+                g.setColor(Color.GREEN);
+                drawFlag = true;
+                break;
+            default:
+                g.setColor(Color.yellow);
+                str = Integer.toString(sprite - FIRST_NUMBER_SPRITE + 1);
+        }
+
+        if (raised) {
+            g.fill3DRect(0, 0, cellSize - 2 * spacing, cellSize - 2 * spacing, true);
+        }
+        else {
+            g.fillRect(0, 0, cellSize - 2 * spacing, cellSize - 2 * spacing);
+        }
+        if (!str.isBlank()) {
+            g.setColor(Color.BLACK);
+            g.setFont(new Font("Monospace", Font.BOLD, cellSize*4 / 9 ));
+            g.drawString(str, cellSize / 3, cellSize * 15 / 24);
+        }
+        else if (drawBomb) {
+            paintBomb(g, 0, 0, cellSize, spacing);
+        }
+        else if (drawFlag) {
+            paintFlag(g, 0, 0, cellSize);
+        }
+    }
+
+    private void paintBomb(Graphics g, int x, int y, int cellSize, int spacing) {
 
         if (cellSize == MEDIUM_GRID_CELL_SIZE) {
 
@@ -247,7 +523,7 @@ class BoardGUI extends JPanel implements MouseListener {
 
     }
 
-    private void paintFlag(Graphics g, int x, int y) {
+    private void paintFlag(Graphics g, int x, int y, int cellSize) {
 
         switch (cellSize) {
             case SMALL_GRID_CELL_SIZE:
@@ -290,6 +566,142 @@ class BoardGUI extends JPanel implements MouseListener {
         }
     }
 
+    /**
+     * Marks the revealed tiles. Tiles far apart, like a chord and a flag across the board, are painted as separate regions.
+     */
+    @Override
+    public void tilesRevealed(int[] tiles, int count) {
+        int sizeX = board.getSizeX();
+        for (int k = 0; k < count; ++k) {
+            int i = tiles[k] / sizeX;
+            markDirty(i, tiles[k] - i * sizeX);
+        }
+    }
+
+    @Override
+    public void tilesCovered(int[] tiles, int count) {
+        tilesRevealed(tiles, count);
+    }
+
+    @Override
+    public void flagToggled(int tile) {
+        int sizeX = board.getSizeX();
+        markDirty(tile / sizeX, tile % sizeX);
+    }
+
+    @Override
+    public void boardRegenerated() {
+        isAllDirty = true;
+    }
+
+    /**
+     * A state change can alter any covered tile: bombs are uncovered at the end of a game, question marks come and go
+     */
+    @Override
+    public void stateChanged(IGame.State previous, IGame.State state) {
+        isAllDirty = true;
+    }
+
+    /**
+     * Adds the tile to the region it lies near, or to a new region. Once there are MAX_DIRTY_REGIONS, the nearest one grows.
+     */
+    private void markDirty(int i, int j) {
+        int nearest = -1;
+        int nearestDistance = Integer.MAX_VALUE;
+        for (int r = 0; r < 4 * nDirtyRegions; r += 4) {
+            int distance = Math.max(
+                    Math.max(dirtyRegions[r] - i, i - dirtyRegions[r + 1]),
+                    Math.max(dirtyRegions[r + 2] - j, j - dirtyRegions[r + 3]));
+            if (distance < nearestDistance) {
+                nearest = r;
+                nearestDistance = distance;
+            }
+        }
+        if (nearest < 0 || nearestDistance > DIRTY_MERGE_DISTANCE && nDirtyRegions < MAX_DIRTY_REGIONS) {
+            int r = 4 * nDirtyRegions++;
+            dirtyRegions[r] = dirtyRegions[r + 1] = i;
+            dirtyRegions[r + 2] = dirtyRegions[r + 3] = j;
+            return;
+        }
+        dirtyRegions[nearest] = Math.min(dirtyRegions[nearest], i);
+        dirtyRegions[nearest + 1] = Math.max(dirtyRegions[nearest + 1], i);
+        dirtyRegions[nearest + 2] = Math.min(dirtyRegions[nearest + 2], j);
+        dirtyRegions[nearest + 3] = Math.max(dirtyRegions[nearest + 3], j);
+    }
+
+    /**
+     * Merges the regions that grew near each other, so no tile is painted twice
+     */
+    private void mergeDirtyRegions() {
+        for (int a = 0; a < 4 * nDirtyRegions; a += 4) {
+            for (int b = a + 4; b < 4 * nDirtyRegions; b += 4) {
+                int distance = Math.max(
+                        Math.max(dirtyRegions[a] - dirtyRegions[b + 1], dirtyRegions[b] - dirtyRegions[a + 1]),
+                        Math.max(dirtyRegions[a + 2] - dirtyRegions[b + 3], dirtyRegions[b + 2] - dirtyRegions[a + 3]));
+                if (distance > DIRTY_MERGE_DISTANCE) continue;
+                dirtyRegions[a] = Math.min(dirtyRegions[a], dirtyRegions[b]);
+                dirtyRegions[a + 1] = Math.max(dirtyRegions[a + 1], dirtyRegions[b + 1]);
+                dirtyRegions[a + 2] = Math.min(dirtyRegions[a + 2], dirtyRegions[b + 2]);
+                dirtyRegions[a + 3] = Math.max(dirtyRegions[a + 3], dirtyRegions[b + 3]);
+                // the last region takes b's place, and a is checked again against all the others
+                System.arraycopy(dirtyRegions, 4 * --nDirtyRegions, dirtyRegions, b, 4);
+                b = a;
+            }
+        }
+    }
+
+    /**
+     * Paints the tiles changed since the last flush. Called on the event dispatch thread with the read lock held.
+     * They are painted right away, while the lock is held and the game engine waits, rather than by a later paint that could miss it.
+     */
+    void flush() {
+        if (lateRect != null) {
+            Rectangle late = lateRect.intersection(getVisibleRect());
+            lateRect = null;
+            if (!late.isEmpty()) {
+                paintImmediately(late);
+            }
+        }
+        if (board.getSizeX() != boardSizeX || board.getSizeY() != boardSizeY) {
+            // setDimensions() is yet to run for the new size, and repaints everything
+            isAllDirty = false;
+            nDirtyRegions = 0;
+            return;
+        }
+        if (isAllDirty) {
+            isLodStale = true;
+            paintImmediately(getVisibleRect());
+        }
+        else {
+            mergeDirtyRegions();
+            Rectangle visible = getVisibleRect();
+            for (int r = 0; r < 4 * nDirtyRegions; r += 4) {
+                int firstI = dirtyRegions[r];
+                int lastI = dirtyRegions[r + 1];
+                int firstJ = dirtyRegions[r + 2];
+                int lastJ = dirtyRegions[r + 3];
+                if (lodPixels != null && !isLodStale) {
+                    updateLodPixels(firstI, lastI, firstJ, lastJ, game.getState());
+                }
+                Rectangle region = getTilesRect(firstI, lastI, firstJ, lastJ).intersection(visible);
+                if (!region.isEmpty()) {
+                    paintImmediately(region);
+                }
+            }
+        }
+        isAllDirty = false;
+        nDirtyRegions = 0;
+    }
+
+    private Rectangle getTilesRect(int firstI, int lastI, int firstJ, int lastJ) {
+        return new Rectangle(
+                3 * spacing + firstJ * cellSize,
+                3 * spacing + firstI * cellSize,
+                (lastJ - firstJ + 1) * cellSize,
+                (lastI - firstI + 1) * cellSize
+        );
+    }
+
     /**
      * Get grid j index from JPanel X coordinate
      * @param x
@@ -308,27 +720,78 @@ class BoardGUI extends JPanel implements MouseListener {
         return (y - 3 * spacing) / cellSize;
     }
 
+    /**
+     * Queues the move on the game engine. The tile is taken from the size shown, and the move dropped if the size changed since
+     */
     @Override
     public void mouseClicked(MouseEvent e) {
-        var state = game.getState();
-
-        if (!(state == Game.State.PLAYING || state == Game.State.PLACING_FLAGS)) return;
-
+        int sizeX = boardSizeX;
+        int sizeY = boardSizeY;
         int i = getIfromY(e.getY());
         int j = getJfromX(e.getX());
+        if (i < 0 || i >= sizeY || j < 0 || j >= sizeX) return; // the border was clicked
+
+        engine.submit(() -> {
+            var state = game.getState();
 
-        var cell = board.getCell(i, j);
+            if (!(state == Game.State.PLAYING || state == Game.State.PLACING_FLAGS)) return;
+            if (board.getSizeX() != sizeX || board.getSizeY() != sizeY) return;
 
-        if (cell.isVisible()) return; // title was already visible
+            var cell = board.getCell(i, j);
+
+            if (cell.isVisible()) {
+                // clicking a number reveals its unflagged neighbours once its bombs are all flagged
+                if (state == Game.State.PLAYING) {
+                    game.chord(i, j);
+                }
+                return;
+            }
+
+            if (state == Game.State.PLACING_FLAGS) {
+                cell.toggleFlag();
+                return;
+            }
+
+            game.revealTile(i, j);
+        });
+    }
+
+    /**
+     * Zooms in or out while Ctrl is held, keeping the tile under the mouse pointer in place. Scrolls otherwise.
+     */
+    @Override
+    public void mouseWheelMoved(MouseWheelEvent e) {
+        var scrollPane = (JScrollPane) SwingUtilities.getAncestorOfClass(JScrollPane.class, this);
+        if (scrollPane == null) return;
 
-        if (state == Game.State.PLACING_FLAGS) {
-            cell.toggleFlag();
-            mainGUI.refresh();
+        if (!e.isControlDown()) {
+            // a component with a wheel listener of its own hides the wheel events from its scroll pane
+            scrollPane.dispatchEvent(SwingUtilities.convertMouseEvent(this, e, scrollPane));
             return;
         }
 
-        game.revealTile(i, j);
-        mainGUI.refresh();
+        int newCellSize = e.getWheelRotation() < 0 ?
+                Math.min(cellSize + Math.max(cellSize / 4, 1), MAX_CELL_SIZE) :
+                Math.max(cellSize - Math.max(cellSize / 5, 1), 1);
+        if (newCellSize == cellSize) return;
+
+        JViewport viewport = scrollPane.getViewport();
+        Point viewPosition = viewport.getViewPosition();
+        double tileX = (e.getX() - 3.0 * spacing) / cellSize;
+        double tileY = (e.getY() - 3.0 * spacing) / cellSize;
+
+        cellSize = newCellSize;
+        spacing = getSpacing(cellSize);
+        layoutGrid();
+        mainGUI.placeBoard();
+
+        Dimension extent = viewport.getExtentSize();
+        int x = (int) (3 * spacing + tileX * cellSize) - (e.getX() - viewPosition.x);
+        int y = (int) (3 * spacing + tileY * cellSize) - (e.getY() - viewPosition.y);
+        viewport.setViewPosition(new Point(
+                Math.max(Math.min(x, gridWidth - extent.width), 0),
+                Math.max(Math.min(y, gridHeight - extent.height), 0)
+        ));
     }
 
     @Override
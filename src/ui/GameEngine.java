@@ -0,0 +1,138 @@
+package ui;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Runs the domain work of the GUI on a thread of its own, so that the event dispatch thread stays free for input and painting.
+ * Commands are queued and run one at a time, holding the write lock: the board, game and manager are only changed there.
+ * The event dispatch thread reads them holding the read lock.
+ * The GUI is refreshed from a Swing timer at the display refresh rate, once for all the commands run since the last refresh.
+ * A refresh never waits for a running command: it is skipped, and the engine lets the next one through before its next command.
+ */
+class GameEngine {
+
+    private static final int DEFAULT_REFRESH_RATE = 60;
+
+    private final ExecutorService executor;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Runnable refresh;
+    private final Timer refreshTimer;
+    private final ConcurrentLinkedQueue<Runnable> pendingUpdates = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean isChanged = new AtomicBoolean();
+    private final Object refreshMonitor = new Object();
+    private volatile boolean isRefreshLate; // a refresh was skipped for a running command
+
+    /**
+     * @param refresh updates the GUI from the domain, on the event dispatch thread with the read lock held
+     */
+    GameEngine(Runnable refresh) {
+        this.refresh = refresh;
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "game-engine");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        refreshTimer = new Timer(1000 / getRefreshRate(), e -> refresh());
+        refreshTimer.start();
+    }
+
+    /**
+     * Queues a command, to be run after the commands queued before it
+     */
+    void submit(Runnable command) {
+        submit(command, null);
+    }
+
+    /**
+     * @param update run by the first refresh after the command, before the GUI is refreshed, or null
+     */
+    void submit(Runnable command, Runnable update) {
+        executor.execute(() -> {
+            awaitRefresh();
+            lock.writeLock().lock();
+            try {
+                command.run();
+            }
+            finally {
+                if (update != null) {
+                    pendingUpdates.add(update);
+                }
+                isChanged.set(true);
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Stops refreshing the GUI and running commands. Queued commands are dropped.
+     */
+    void shutdown() {
+        refreshTimer.stop();
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return the lock to hold while painting from the domain
+     */
+    Lock getReadLock() {
+        return lock.readLock();
+    }
+
+    private void refresh() {
+        if (!isChanged.get()) return;
+        if (!lock.readLock().tryLock()) {
+            isRefreshLate = true;
+            return;
+        }
+        try {
+            isChanged.set(false);
+            for (Runnable update = pendingUpdates.poll(); update != null; update = pendingUpdates.poll()) {
+                update.run();
+            }
+            refresh.run();
+        }
+        finally {
+            lock.readLock().unlock();
+            synchronized (refreshMonitor) {
+                isRefreshLate = false;
+                refreshMonitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits for a late refresh, for up to two timer periods: commands go on if the event dispatch thread is busy elsewhere
+     */
+    private void awaitRefresh() {
+        if (!isRefreshLate) return;
+
+        long deadline = System.nanoTime() + 2_000_000L * refreshTimer.getDelay();
+        synchronized (refreshMonitor) {
+            try {
+                for (long remaining = deadline - System.nanoTime(); isRefreshLate && remaining > 0;
+                     remaining = deadline - System.nanoTime()) {
+                    refreshMonitor.wait(remaining / 1_000_000 + 1);
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static int getRefreshRate() {
+        if (GraphicsEnvironment.isHeadless()) return DEFAULT_REFRESH_RATE;
+
+        int refreshRate = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                .getDisplayMode().getRefreshRate();
+        return refreshRate == DisplayMode.REFRESH_RATE_UNKNOWN ? DEFAULT_REFRESH_RATE : refreshRate;
+    }
+}
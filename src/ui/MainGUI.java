@@ -1,15 +1,27 @@
 package ui;
 
-import domain.Board;
 import domain.Game;
 import domain.Manager;
+import domain.Session;
+import interfaces.IBoard;
+import interfaces.IGame;
+import interfaces.IManager;
 
 import javax.swing.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * Displays the board, controls, menu and announcements.
+ * Moves and menu actions are run by a GameEngine, off the event dispatch thread, and the display is refreshed from it.
  */
 public class MainGUI extends JFrame implements ActionListener {
 
@@ -17,61 +29,160 @@ public class MainGUI extends JFrame implements ActionListener {
     private static final int WINDOW_HEIGHT = 829;
     static final int PANEL_WIDTH = 1180;
     static final int PANEL_HEIGHT = 800;
+    // room left for the board below the top panels. Boards that do not fit are scrolled
+    static final int BOARD_AREA_TOP = 138;
+    static final int BOARD_AREA_WIDTH = PANEL_WIDTH - 10;
+    static final int BOARD_AREA_HEIGHT = PANEL_HEIGHT - 30 - BOARD_AREA_TOP;
 
+    private static final int MAX_CUSTOM_GRID_SIZE = 5000;
+
+    // the game is saved there on closing, and taken up again on the next start
+    private static final Path SAVE_FILE = Paths.get(System.getProperty("user.home"), ".mine_sweeper.sav");
+    // every move is journaled there, so that a game cut short by a crash is taken up again too
+    private static final Path JOURNAL_FILE = Paths.get(System.getProperty("user.home"), ".mine_sweeper.journal");
+
+    private static final String EDIT_MENU_STRING = "Edit";
     private static final String MODE_MENU_STRING = "Mode";
     private static final String DIFFICULTY_MENU_STRING = "Difficulty";
     private static final String BOARD_SIZE_MENU_STRING = "Board size";
+    private static final String UNDO_OPTION_STRING = "Undo";
+    private static final String REDO_OPTION_STRING = "Redo";
     private static final String SINGLE_GAME_OPTION_STRING = "Single-Game";
     private static final String MULTILEVEL_OPTION_STRING = "Multilevel";
+    private static final String NO_GUESS_OPTION_STRING = "No-Guess Boards";
+    private static final String UNBOUNDED_OPTION_STRING = "Unbounded Board";
+    private static final String SCROLL_UP_OPTION_STRING = "Scroll Up";
+    private static final String SCROLL_DOWN_OPTION_STRING = "Scroll Down";
+    private static final String SCROLL_LEFT_OPTION_STRING = "Scroll Left";
+    private static final String SCROLL_RIGHT_OPTION_STRING = "Scroll Right";
     private static final String EASY_OPTION_STRING = "Easy";
     private static final String MEDIUM_OPTION_STRING = "Medium";
     private static final String HARD_OPTION_STRING = "Hard";
     private static final String SMALL_BOARD_OPTION_STRING = "Small Board";
     private static final String MEDIUM_BOARD_OPTION_STRING = "Medium Board";
     private static final String LARGE_BOARD_OPTION_STRING = "Large Board";
+    private static final String CUSTOM_BOARD_OPTION_STRING = "Custom Board...";
 
     private static final String BOARD_SIZE_CHANGE_WARNING = "This change will cause a new game to be started. Would you like to proceed?";
     private static final String BOARD_SIZE_CHANGE_WARNING_TITLE = "Board Size Change";
+    private static final String CUSTOM_BOARD_SIZE_PROMPT = "Board size, as columns x rows. This change will cause a new game to be started.";
+    private static final String CUSTOM_BOARD_SIZE_ERROR = "Please enter the board size as columns x rows, each from 2 to " + MAX_CUSTOM_GRID_SIZE + ".";
+    private static final String JOURNAL_FAILURE_WARNING = "The game could not be written to the journal, and may not be taken up again after a crash: ";
+    private static final String JOURNAL_FAILURE_WARNING_TITLE = "Journal";
 
 
-    private Board board; // logical board
-    private Game game;
-    private Manager manager;
+    private IBoard board; // logical board
+    private IGame game;
+    private IManager manager;
+    private final Session session;
+    private GameEngine engine;
+    private boolean isJournalFailureShown; // the warning is shown once per failure, not on every refresh
 
     private BoardGUI boardGUI;
+    private JScrollPane boardScrollPane;
     private TopLeftPanel topLeftPanel;
     private AnnouncementPanel announcementPanel;
+    private JMenuItem undoOption;
+    private JMenuItem redoOption;
+    private JMenuItem[] scrollOptions;
 
     public MainGUI() {
 
-        board = Board.getInstance();
-        game = Game.getInstance();
-        manager = new Manager(board, game);
+        session = new Session();
+        if (Files.exists(SAVE_FILE)) {
+            try {
+                session.load(SAVE_FILE);
+            }
+            catch (IOException e) {
+                // an unreadable save starts a new game, as a missing one does
+            }
+        }
+        try {
+            // the journal is at least as recent as the save
+            session.openJournal(JOURNAL_FILE);
+        }
+        catch (IOException e) {
+            // the game goes on without a journal
+        }
+        board = session.getBoard();
+        game = session.getGame();
+        manager = session.getManager();
+        manager.setPreparingNextLevel(true);
+        engine = new GameEngine(this::refresh);
 
         setLayout(null);
 
         setTitle("Mine Sweeper");
         setSize(WINDOW_WIDTH, WINDOW_HEIGHT);
-        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                // saved after the moves already queued
+                engine.submit(() -> {
+                    try {
+                        session.save(SAVE_FILE);
+                    }
+                    catch (IOException ex) {
+                        System.err.println("Could not save the game: " + ex.getMessage());
+                    }
+                    try {
+                        session.closeJournal();
+                    }
+                    catch (IOException ex) {
+                        System.err.println("Could not write the journal: " + ex.getMessage());
+                    }
+                    System.exit(0);
+                });
+            }
+        });
 
 
-        boardGUI = new BoardGUI(this, board, game);
-        add(boardGUI);
+        boardGUI = new BoardGUI(this, engine, board, game);
+        boardScrollPane = new JScrollPane(boardGUI);
+        boardScrollPane.setBorder(BorderFactory.createEmptyBorder());
+        add(boardScrollPane);
+        placeBoard();
 
-        announcementPanel = new AnnouncementPanel(this, manager);
+        announcementPanel = new AnnouncementPanel(this, manager, board, game);
         add(announcementPanel);
 
         topLeftPanel = new TopLeftPanel(this);
         add(topLeftPanel);
 
+        JMenu editMenu = new JMenu(EDIT_MENU_STRING);
+        undoOption = new JMenuItem(UNDO_OPTION_STRING);
+        redoOption = new JMenuItem(REDO_OPTION_STRING);
+        undoOption.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK));
+        redoOption.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK));
+        undoOption.setEnabled(false);
+        redoOption.setEnabled(false);
+        undoOption.addActionListener(this);
+        redoOption.addActionListener(this);
+        editMenu.add(undoOption);
+        editMenu.add(redoOption);
+        // unbounded games scroll their window over the board
+        editMenu.addSeparator();
+        scrollOptions = new JMenuItem[] {
+                new JMenuItem(SCROLL_UP_OPTION_STRING), new JMenuItem(SCROLL_DOWN_OPTION_STRING),
+                new JMenuItem(SCROLL_LEFT_OPTION_STRING), new JMenuItem(SCROLL_RIGHT_OPTION_STRING)
+        };
+        int[] scrollKeys = {KeyEvent.VK_UP, KeyEvent.VK_DOWN, KeyEvent.VK_LEFT, KeyEvent.VK_RIGHT};
+        for (int k = 0; k < scrollOptions.length; ++k) {
+            scrollOptions[k].setAccelerator(KeyStroke.getKeyStroke(scrollKeys[k], InputEvent.ALT_DOWN_MASK));
+            scrollOptions[k].setEnabled(false);
+            scrollOptions[k].addActionListener(this);
+            editMenu.add(scrollOptions[k]);
+        }
+
         JMenu modeMenu = new JMenu(MODE_MENU_STRING);
         ButtonGroup modeButtonGroup = new ButtonGroup();
         var singleGameModeOption = new JRadioButtonMenuItem(SINGLE_GAME_OPTION_STRING);
         var multilevelModeOption = new JRadioButtonMenuItem(MULTILEVEL_OPTION_STRING);
-        if (Manager.DEFAULT_MODE == Manager.Mode.MULTILEVEL) {
+        if (manager.getMode() == Manager.Mode.MULTILEVEL) {
             multilevelModeOption.setSelected(true);
         }
-        else if (Manager.DEFAULT_MODE == Manager.Mode.SINGLE_GAME) {
+        else if (manager.getMode() == Manager.Mode.SINGLE_GAME) {
             singleGameModeOption.setSelected(true);
         }
 
@@ -81,6 +192,13 @@ public class MainGUI extends JFrame implements ActionListener {
         multilevelModeOption.addActionListener(this);
         modeMenu.add(singleGameModeOption);
         modeMenu.add(multilevelModeOption);
+        modeMenu.addSeparator();
+        var noGuessOption = new JCheckBoxMenuItem(NO_GUESS_OPTION_STRING, manager.isNoGuess());
+        noGuessOption.addActionListener(this);
+        modeMenu.add(noGuessOption);
+        var unboundedOption = new JCheckBoxMenuItem(UNBOUNDED_OPTION_STRING, manager.isUnbounded());
+        unboundedOption.addActionListener(this);
+        modeMenu.add(unboundedOption);
 
         JMenu difficultyMenu = new JMenu(DIFFICULTY_MENU_STRING);
         ButtonGroup difficultyButtonGroup = new ButtonGroup();
@@ -88,13 +206,13 @@ public class MainGUI extends JFrame implements ActionListener {
         var difficultyMediumOption = new JRadioButtonMenuItem(MEDIUM_OPTION_STRING);
         var difficultyHardOption = new JRadioButtonMenuItem(HARD_OPTION_STRING);
 
-        if (Manager.DEFAULT_DIFFICULTY == Manager.Difficulty.EASY) {
+        if (manager.getDifficulty() == Manager.Difficulty.EASY) {
             difficultyEasyOption.setSelected(true);
         }
-        else if (Manager.DEFAULT_DIFFICULTY == Manager.Difficulty.MEDIUM) {
+        else if (manager.getDifficulty() == Manager.Difficulty.MEDIUM) {
             difficultyMediumOption.setSelected(true);
         }
-        else if (Manager.DEFAULT_DIFFICULTY == Manager.Difficulty.HARD) {
+        else if (manager.getDifficulty() == Manager.Difficulty.HARD) {
             difficultyHardOption.setSelected(true);
         }
 
@@ -113,34 +231,44 @@ public class MainGUI extends JFrame implements ActionListener {
         var smallGridOption = new JRadioButtonMenuItem(SMALL_BOARD_OPTION_STRING);
         var mediumGridOption = new JRadioButtonMenuItem(MEDIUM_BOARD_OPTION_STRING);
         var largeGridOption = new JRadioButtonMenuItem(LARGE_BOARD_OPTION_STRING);
+        var customGridOption = new JRadioButtonMenuItem(CUSTOM_BOARD_OPTION_STRING);
 
-        if (board.getSizeY() == Manager.SMALL_GRID_SIZE_Y) {
+        if (board.getSizeX() == Manager.SMALL_GRID_SIZE_X && board.getSizeY() == Manager.SMALL_GRID_SIZE_Y) {
             smallGridOption.setSelected(true);
         }
-        else if (board.getSizeY() == Manager.MEDIUM_GRID_SIZE_Y) {
+        else if (board.getSizeX() == Manager.MEDIUM_GRID_SIZE_X && board.getSizeY() == Manager.MEDIUM_GRID_SIZE_Y) {
             mediumGridOption.setSelected(true);
         }
-        else if (board.getSizeY() == Manager.LARGE_GRID_SIZE_Y) {
+        else if (board.getSizeX() == Manager.LARGE_GRID_SIZE_X && board.getSizeY() == Manager.LARGE_GRID_SIZE_Y) {
             largeGridOption.setSelected(true);
         }
+        else {
+            customGridOption.setSelected(true);
+        }
 
         boardSizeButtonGroup.add(smallGridOption);
         boardSizeButtonGroup.add(mediumGridOption);
         boardSizeButtonGroup.add(largeGridOption);
+        boardSizeButtonGroup.add(customGridOption);
         smallGridOption.addActionListener(this);
         mediumGridOption.addActionListener(this);
         largeGridOption.addActionListener(this);
+        customGridOption.addActionListener(this);
         boardSizeMenu.add(smallGridOption);
         boardSizeMenu.add(mediumGridOption);
         boardSizeMenu.add(largeGridOption);
+        boardSizeMenu.add(customGridOption);
 
         JMenuBar menuBar = new JMenuBar();
+        menuBar.add(editMenu);
         menuBar.add(modeMenu);
         menuBar.add(difficultyMenu);
         menuBar.add(boardSizeMenu);
 
         setJMenuBar(menuBar);
 
+        // shows the state of a saved game
+        refresh();
         setVisible(true);
         setResizable(false);
 
@@ -148,6 +276,32 @@ public class MainGUI extends JFrame implements ActionListener {
 
     }
 
+    /**
+     * Sizes and centres the board's scroll pane: as large as the board, but no larger than the board area.
+     */
+    void placeBoard() {
+        int gridWidth = boardGUI.getGridWidth();
+        int gridHeight = boardGUI.getGridHeight();
+        int width = Math.min(gridWidth, BOARD_AREA_WIDTH);
+        int height = Math.min(gridHeight, BOARD_AREA_HEIGHT);
+
+        // make room for the scroll bars
+        if (gridWidth > BOARD_AREA_WIDTH) {
+            height = Math.min(height + boardScrollPane.getHorizontalScrollBar().getPreferredSize().height, BOARD_AREA_HEIGHT);
+        }
+        if (gridHeight > BOARD_AREA_HEIGHT) {
+            width = Math.min(width + boardScrollPane.getVerticalScrollBar().getPreferredSize().width, BOARD_AREA_WIDTH);
+        }
+
+        int y = Math.min((PANEL_HEIGHT - height) * 6 / 9, BOARD_AREA_TOP + BOARD_AREA_HEIGHT - height);
+        boardScrollPane.setBounds((PANEL_WIDTH - width) / 2, Math.max(y, BOARD_AREA_TOP), width, height);
+        boardScrollPane.validate();
+        repaint();
+    }
+
+    /**
+     * Shows the game state. Called on the event dispatch thread with the read lock held.
+     */
     void refresh() {
 
         Game.State gameState = game.getState();
@@ -166,8 +320,30 @@ public class MainGUI extends JFrame implements ActionListener {
         else if (gameState == Game.State.LOST) {
             announcementPanel.setGameResultString(AnnouncementPanel.GAME_LOST_STRING);
         }
+        else {
+            // the end of the game may have been undone
+            announcementPanel.setGameResultString(AnnouncementPanel.NO_RESULT);
+            topLeftPanel.setContinueIsVisible(false);
+        }
+        undoOption.setEnabled(game.canUndo());
+        redoOption.setEnabled(game.canRedo());
+        for (JMenuItem scrollOption : scrollOptions) {
+            scrollOption.setEnabled(manager.canScroll());
+        }
 
-        repaint(0);
+        IOException journalFailure = session.getJournalFailure();
+        if (journalFailure != null && !isJournalFailureShown) {
+            // not shown from here, where the read lock is held
+            SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                    JOURNAL_FAILURE_WARNING + journalFailure.getMessage(), JOURNAL_FAILURE_WARNING_TITLE,
+                    JOptionPane.WARNING_MESSAGE));
+        }
+        isJournalFailureShown = journalFailure != null;
+
+        // the board repaints the tiles changed by the board and game change events
+        boardGUI.flush();
+        announcementPanel.repaint(0);
+        topLeftPanel.repaint(0);
 
     }
 
@@ -178,70 +354,120 @@ public class MainGUI extends JFrame implements ActionListener {
         switch (actionCommand) {
             case TopLeftPanel.CONTINUE_BUTTON_STRING:
 
-                manager.setNextLevel();
-
                 topLeftPanel.setContinueIsVisible(false);
-                announcementPanel.setGameStateString();
-                announcementPanel.setGameResultString(AnnouncementPanel.NO_RESULT);
-                refresh();
+                engine.submit(manager::setNextLevel, this::showNewLevel);
                 break;
 
             case TopLeftPanel.NEWGAME_BUTTON_STRING:
 
-                manager.setNewGame();
-
                 topLeftPanel.setContinueIsVisible(false);
-                announcementPanel.setGameStateString();
-                announcementPanel.setGameResultString(AnnouncementPanel.NO_RESULT);
-                refresh();
+                engine.submit(manager::setNewGame, this::showNewLevel);
                 break;
 
             case AnnouncementPanel.FLAG_BUTTON_ACTION:
 
-                Game.State gameState = game.getState();
-                if (gameState == Game.State.WON || gameState == Game.State.LOST) {
-                    return;
-                }
-                // toggle Flag Buton
-                manager.toggleFlagMode();
-                refresh();
+                engine.submit(() -> {
+                    Game.State gameState = game.getState();
+                    if (gameState == Game.State.WON || gameState == Game.State.LOST) {
+                        return;
+                    }
+                    // toggle Flag Buton
+                    manager.toggleFlagMode();
+                });
+                break;
+
+            case UNDO_OPTION_STRING:
+                engine.submit(game::undo);
+                break;
+
+            case REDO_OPTION_STRING:
+                engine.submit(game::redo);
                 break;
 
             case SINGLE_GAME_OPTION_STRING:
-                manager.setMode(Manager.Mode.SINGLE_GAME);
+                engine.submit(() -> manager.setMode(Manager.Mode.SINGLE_GAME));
                 break;
 
             case MULTILEVEL_OPTION_STRING:
-                manager.setMode(Manager.Mode.MULTILEVEL);
+                engine.submit(() -> manager.setMode(Manager.Mode.MULTILEVEL));
+                break;
+
+            case NO_GUESS_OPTION_STRING:
+                boolean isNoGuess = ((JCheckBoxMenuItem) e.getSource()).isSelected();
+                engine.submit(() -> manager.setNoGuess(isNoGuess));
+                break;
+
+            case UNBOUNDED_OPTION_STRING:
+                boolean isUnbounded = ((JCheckBoxMenuItem) e.getSource()).isSelected();
+                engine.submit(() -> manager.setUnbounded(isUnbounded));
+                break;
+
+            // by a quarter of the window
+            case SCROLL_UP_OPTION_STRING:
+                engine.submit(() -> manager.scroll(-Math.max(board.getSizeY() / 4, 1), 0));
+                break;
+
+            case SCROLL_DOWN_OPTION_STRING:
+                engine.submit(() -> manager.scroll(Math.max(board.getSizeY() / 4, 1), 0));
+                break;
+
+            case SCROLL_LEFT_OPTION_STRING:
+                engine.submit(() -> manager.scroll(0, -Math.max(board.getSizeX() / 4, 1)));
+                break;
+
+            case SCROLL_RIGHT_OPTION_STRING:
+                engine.submit(() -> manager.scroll(0, Math.max(board.getSizeX() / 4, 1)));
                 break;
 
             case EASY_OPTION_STRING:
-                manager.setDifficulty(Manager.Difficulty.EASY);
+                engine.submit(() -> manager.setDifficulty(Manager.Difficulty.EASY));
                 break;
 
             case MEDIUM_OPTION_STRING:
-                manager.setDifficulty(Manager.Difficulty.MEDIUM);
+                engine.submit(() -> manager.setDifficulty(Manager.Difficulty.MEDIUM));
                 break;
 
             case HARD_OPTION_STRING:
-                manager.setDifficulty(Manager.Difficulty.HARD);
+                engine.submit(() -> manager.setDifficulty(Manager.Difficulty.HARD));
                 break;
 
             case SMALL_BOARD_OPTION_STRING:
-                if (board.getSizeX() == Manager.SMALL_GRID_SIZE_X) return; // current value was selected
+                if (boardGUI.getBoardSizeX() == Manager.SMALL_GRID_SIZE_X) return; // current value was selected
                 processBoardSizeChangeRequest(actionCommand);
                 break;
             case MEDIUM_BOARD_OPTION_STRING:
-                if (board.getSizeX() == Manager.MEDIUM_GRID_SIZE_X) return; // current value was selected
+                if (boardGUI.getBoardSizeX() == Manager.MEDIUM_GRID_SIZE_X) return; // current value was selected
                 processBoardSizeChangeRequest(actionCommand);
                 break;
             case LARGE_BOARD_OPTION_STRING:
-                if (board.getSizeX() == Manager.LARGE_GRID_SIZE_X) return; // current value was selected
+                if (boardGUI.getBoardSizeX() == Manager.LARGE_GRID_SIZE_X) return; // current value was selected
                 processBoardSizeChangeRequest(actionCommand);
                 break;
+            case CUSTOM_BOARD_OPTION_STRING:
+                processCustomBoardSizeRequest();
+                break;
         }
     }
 
+    /**
+     * Clears the result of the last level. Called on the event dispatch thread with the read lock held.
+     */
+    private void showNewLevel() {
+        topLeftPanel.setContinueIsVisible(false);
+        announcementPanel.setGameStateString();
+        announcementPanel.setGameResultString(AnnouncementPanel.NO_RESULT);
+        refresh();
+    }
+
+    /**
+     * Lays the board out for its new size and shows the new game. Called on the event dispatch thread with the read lock held.
+     */
+    private void showNewBoard() {
+        boardGUI.setDimensions();
+        placeBoard();
+        showNewLevel();
+    }
+
     private void processBoardSizeChangeRequest(String change) {
         int answer = JOptionPane.showOptionDialog(
                 this,
@@ -271,9 +497,39 @@ public class MainGUI extends JFrame implements ActionListener {
                 sizeY = Manager.LARGE_GRID_SIZE_Y;
         }
 
-        manager.setBoardSizeAndRestart(sizeY, sizeX);
-        boardGUI.setDimensions();
-        refresh();
+        setBoardSize(sizeY, sizeX);
+    }
+
+    private void processCustomBoardSizeRequest() {
+        String answer = JOptionPane.showInputDialog(
+                this,
+                CUSTOM_BOARD_SIZE_PROMPT,
+                boardGUI.getBoardSizeX() + " x " + boardGUI.getBoardSizeY()
+        );
+        if (answer == null) return;
+
+        String[] sizes = answer.toLowerCase().split("x");
+        int sizeX = 0, sizeY = 0;
+        if (sizes.length == 2) {
+            try {
+                sizeX = Integer.parseInt(sizes[0].trim());
+                sizeY = Integer.parseInt(sizes[1].trim());
+            }
+            catch (NumberFormatException e) {
+                sizeX = 0;
+            }
+        }
+        if (sizeX < 2 || sizeY < 2 || sizeX > MAX_CUSTOM_GRID_SIZE || sizeY > MAX_CUSTOM_GRID_SIZE) {
+            JOptionPane.showMessageDialog(this, CUSTOM_BOARD_SIZE_ERROR, BOARD_SIZE_CHANGE_WARNING_TITLE, JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        setBoardSize(sizeY, sizeX);
+    }
+
+    private void setBoardSize(int sizeY, int sizeX) {
+        topLeftPanel.setContinueIsVisible(false);
+        engine.submit(() -> manager.setBoardSizeAndRestart(sizeY, sizeX), this::showNewBoard);
     }
 }
 